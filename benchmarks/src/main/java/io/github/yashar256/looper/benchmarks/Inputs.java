@@ -0,0 +1,53 @@
+package io.github.yashar256.looper.benchmarks;
+
+import io.github.yashar256.looper.MenuLooper;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Shared helpers for building scripted benchmark input.
+ */
+final class Inputs {
+    static final String INVALID_LINE = "oops";
+
+    private Inputs() {
+    }
+
+    /**
+     * Repeats a token on its own line. Invalid input puts a line which cannot be parsed before every token, so each read retries exactly once.
+     */
+    static String repeat(String token, int count, boolean invalid) {
+        StringBuilder input = new StringBuilder((token.length() + INVALID_LINE.length() + 2) * count);
+        for (int i = 0; i < count; i++) {
+            if (invalid) {
+                input.append(INVALID_LINE).append('\n');
+            }
+            input.append(token).append('\n');
+        }
+        return input.toString();
+    }
+
+    /**
+     * @return An output which throws everything written to it away, so benchmarks measure formatting and encoding but not the terminal
+     */
+    static MenuLooper.Output discardingOutput() {
+        return new MenuLooper.Output(new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer src) {
+                int remaining = src.remaining();
+                src.position(src.limit());
+                return remaining;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+    }
+}
@@ -0,0 +1,65 @@
+package io.github.yashar256.looper.benchmarks;
+
+import io.github.yashar256.looper.MenuLooper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures end to end {@link MenuLooper#run()} dispatch over a scripted session of one million selections, including rendering the menu before every selection.
+ * The script cycles through an option without input, an option which reads an integer and an option which reads a line.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class MenuLooperBenchmark {
+    static final int SELECTIONS = 1_000_000;
+
+    private MenuLooper.Output output;
+    private String session;
+    private long counter;
+
+    @Setup
+    public void setup() {
+        output = Inputs.discardingOutput();
+        StringBuilder script = new StringBuilder(SELECTIONS * 6);
+        for (int i = 0; i < SELECTIONS; i++) {
+            switch (i % 3) {
+                case 0:
+                    script.append("1\n");
+                    break;
+                case 1:
+                    script.append("2 ").append(i).append('\n');
+                    break;
+                default:
+                    script.append("3\nsome text\n");
+                    break;
+            }
+        }
+        session = script.append("4\n").toString();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SELECTIONS)
+    public long run() {
+        MenuLooper menu = new MenuLooper(session, output);
+        menu.addOption("Increment", () -> counter++);
+        menu.addOption("Add a number", scanner -> counter += scanner.nextInt());
+        menu.addOption("Measure a line", scanner -> counter += scanner.nextLine().length());
+        menu.run();
+        return counter;
+    }
+}
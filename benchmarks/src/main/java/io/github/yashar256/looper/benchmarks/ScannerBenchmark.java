@@ -0,0 +1,248 @@
+package io.github.yashar256.looper.benchmarks;
+
+import io.github.yashar256.looper.MenuLooper;
+import io.github.yashar256.looper.ParseResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures every {@link MenuLooper.Scanner} read method over scripted input, with and without a radix.
+ * With {@code input=invalid} every value is preceded by a line that cannot be parsed, which measures the retry path.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ScannerBenchmark {
+    static final int TOKENS = 10_000;
+
+    @Param({"valid", "invalid"})
+    public String input;
+
+    private MenuLooper.Output output;
+    private String words;
+    private String integers;
+    private String binaryIntegers;
+    private String bytes;
+    private String binaryBytes;
+    private String decimals;
+    private String bigIntegers;
+    private String bigDecimals;
+    private String booleans;
+    private String lines;
+    private String interleaved;
+
+    @Setup
+    public void setup() {
+        boolean invalid = input.equals("invalid");
+        output = Inputs.discardingOutput();
+        // Words and lines cannot be invalid, so they are always measured without retries
+        words = Inputs.repeat("menu", TOKENS, false);
+        lines = Inputs.repeat("the quick brown fox", TOKENS, false);
+        integers = Inputs.repeat("-12345", TOKENS, invalid);
+        binaryIntegers = Inputs.repeat("101101", TOKENS, invalid);
+        bytes = Inputs.repeat("-123", TOKENS, invalid);
+        binaryBytes = Inputs.repeat("1011011", TOKENS, invalid);
+        decimals = Inputs.repeat("3.14159", TOKENS, invalid);
+        bigIntegers = Inputs.repeat("123456789012345678901234567890", TOKENS, invalid);
+        bigDecimals = Inputs.repeat("12345678901234567890.0987654321", TOKENS, invalid);
+        booleans = Inputs.repeat("yes", TOKENS, invalid);
+        // nextLine after nextInt has to discard the rest of the integer's line before reading the next one
+        interleaved = Inputs.repeat("42 trailing words\nthe quick brown fox", TOKENS, invalid);
+    }
+
+    private MenuLooper.Scanner scanner(String script) {
+        return new MenuLooper.Scanner(script, output);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void next(Blackhole blackhole) {
+        MenuLooper.Scanner scanner = scanner(words);
+        for (int i = 0; i < TOKENS; i++) {
+            blackhole.consume(scanner.next());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void nextLine(Blackhole blackhole) {
+        MenuLooper.Scanner scanner = scanner(lines);
+        for (int i = 0; i < TOKENS; i++) {
+            blackhole.consume(scanner.nextLine());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void nextBoolean(Blackhole blackhole) {
+        MenuLooper.Scanner scanner = scanner(booleans);
+        for (int i = 0; i < TOKENS; i++) {
+            blackhole.consume(scanner.nextBoolean());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void nextByte(Blackhole blackhole) {
+        MenuLooper.Scanner scanner = scanner(bytes);
+        for (int i = 0; i < TOKENS; i++) {
+            blackhole.consume(scanner.nextByte());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void nextByteRadix(Blackhole blackhole) {
+        MenuLooper.Scanner scanner = scanner(binaryBytes);
+        for (int i = 0; i < TOKENS; i++) {
+            blackhole.consume(scanner.nextByte(2));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void nextShort(Blackhole blackhole) {
+        MenuLooper.Scanner scanner = scanner(integers);
+        for (int i = 0; i < TOKENS; i++) {
+            blackhole.consume(scanner.nextShort());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void nextShortRadix(Blackhole blackhole) {
+        MenuLooper.Scanner scanner = scanner(binaryIntegers);
+        for (int i = 0; i < TOKENS; i++) {
+            blackhole.consume(scanner.nextShort(2));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void nextInt(Blackhole blackhole) {
+        MenuLooper.Scanner scanner = scanner(integers);
+        for (int i = 0; i < TOKENS; i++) {
+            blackhole.consume(scanner.nextInt());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void nextIntRadix(Blackhole blackhole) {
+        MenuLooper.Scanner scanner = scanner(binaryIntegers);
+        for (int i = 0; i < TOKENS; i++) {
+            blackhole.consume(scanner.nextInt(2));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public int[] nextInts() {
+        return scanner(integers).nextInts(TOKENS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void tryNextInt(Blackhole blackhole) {
+        MenuLooper.Scanner scanner = scanner(integers);
+        int read = 0;
+        while (read < TOKENS) {
+            ParseResult result = scanner.tryNextInt();
+            if (result.isOk()) {
+                blackhole.consume(result.intValue());
+                read++;
+            } else {
+                blackhole.consume(scanner.nextLine());
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void nextLong(Blackhole blackhole) {
+        MenuLooper.Scanner scanner = scanner(integers);
+        for (int i = 0; i < TOKENS; i++) {
+            blackhole.consume(scanner.nextLong());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void nextLongRadix(Blackhole blackhole) {
+        MenuLooper.Scanner scanner = scanner(binaryIntegers);
+        for (int i = 0; i < TOKENS; i++) {
+            blackhole.consume(scanner.nextLong(2));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void nextDouble(Blackhole blackhole) {
+        MenuLooper.Scanner scanner = scanner(decimals);
+        for (int i = 0; i < TOKENS; i++) {
+            blackhole.consume(scanner.nextDouble());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void nextFloat(Blackhole blackhole) {
+        MenuLooper.Scanner scanner = scanner(decimals);
+        for (int i = 0; i < TOKENS; i++) {
+            blackhole.consume(scanner.nextFloat());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void nextBigInteger(Blackhole blackhole) {
+        MenuLooper.Scanner scanner = scanner(bigIntegers);
+        for (int i = 0; i < TOKENS; i++) {
+            blackhole.consume(scanner.nextBigInteger());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void nextBigIntegerRadix(Blackhole blackhole) {
+        MenuLooper.Scanner scanner = scanner(binaryIntegers);
+        for (int i = 0; i < TOKENS; i++) {
+            blackhole.consume(scanner.nextBigInteger(2));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void nextBigDecimal(Blackhole blackhole) {
+        MenuLooper.Scanner scanner = scanner(bigDecimals);
+        for (int i = 0; i < TOKENS; i++) {
+            blackhole.consume(scanner.nextBigDecimal());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void nextIntThenNextLine(Blackhole blackhole) {
+        MenuLooper.Scanner scanner = scanner(interleaved);
+        for (int i = 0; i < TOKENS; i++) {
+            blackhole.consume(scanner.nextInt());
+            blackhole.consume(scanner.nextLine());
+        }
+    }
+}
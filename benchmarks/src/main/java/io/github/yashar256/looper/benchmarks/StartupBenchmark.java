@@ -0,0 +1,114 @@
+package io.github.yashar256.looper.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long a short-lived program using MenuLooper takes to start, by starting the looper's small training program as a new JVM for every invocation.
+ * Each invocation includes starting the JVM, so the results show what users of a command-line tool wait for rather than the steady-state cost of the looper.
+ *
+ * Run {@code mvn package} in the parent directory first, and {@code mvn -Pappcds package} to compare against a class data sharing archive,
+ * for example {@code java -jar target/benchmarks.jar StartupBenchmark -p archive=,../target/looper.jsa}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+    private static final String MAIN_CLASS = "io.github.yashar256.looper.StartupTraining";
+    /** The end of the last line of the training program's menu */
+    private static final byte[] MENU_END = "Exit".getBytes(StandardCharsets.US_ASCII);
+
+    /** The looper jar, relative to the directory the benchmarks are run from */
+    @Param("../target/looper-1.0-SNAPSHOT.jar")
+    public String looperJar;
+
+    /** The class data sharing archive to start the JVM with, or empty to start it without one */
+    @Param("")
+    public String archive;
+
+    /**
+     * Starts the program without arguments and waits until its menu is displayed, then kills it.
+     */
+    @Benchmark
+    public long timeToFirstPrompt() throws IOException, InterruptedException {
+        Process process = start();
+        try {
+            return readUntilMenu(process.getInputStream());
+        } finally {
+            process.destroyForcibly().waitFor();
+        }
+    }
+
+    /**
+     * Starts the program with a selection and its input as arguments, and waits for it to finish.
+     */
+    @Benchmark
+    public long timeToCompletion() throws IOException, InterruptedException {
+        Process process = start("Add", "1", "2");
+        long read = discard(process.getInputStream());
+        if (process.waitFor() != 0) {
+            throw new IllegalStateException("The program exited with " + process.exitValue());
+        }
+        return read;
+    }
+
+    private Process start(String... args) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        if (!archive.isEmpty()) {
+            command.add("-XX:SharedArchiveFile=" + archive);
+        }
+        command.add("-cp");
+        command.add(looperJar);
+        command.add(MAIN_CLASS);
+        command.addAll(Arrays.asList(args));
+        return new ProcessBuilder(command).redirectErrorStream(true).start();
+    }
+
+    /**
+     * @return How many bytes were read
+     */
+    private static long readUntilMenu(InputStream in) throws IOException {
+        long read = 0;
+        int matched = 0;
+        int b;
+        while ((b = in.read()) >= 0) {
+            read++;
+            matched = b == MENU_END[matched] ? matched + 1 : b == MENU_END[0] ? 1 : 0;
+            if (matched == MENU_END.length) {
+                return read;
+            }
+        }
+        throw new IllegalStateException("The program exited without displaying its menu");
+    }
+
+    private static long discard(InputStream in) throws IOException {
+        byte[] buffer = new byte[8192];
+        long read = 0;
+        int n;
+        while ((n = in.read(buffer)) >= 0) {
+            read += n;
+        }
+        return read;
+    }
+}
@@ -0,0 +1,104 @@
+package io.github.yashar256.looper;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts long runs of digits to {@link BigInteger}s in sub-quadratic time.
+ *
+ * {@link BigInteger#BigInteger(String, int)} multiplies its result by a small power of the radix for every few digits, which takes quadratic time for numbers with millions of digits.
+ * Here the digits are split in half recursively, and the halves are joined with a single multiplication by a power of the radix.
+ * Since large multiplications use Karatsuba and Toom-Cook multiplication, the whole conversion takes O(M(n) log n) time rather than O(n^2).
+ */
+final class BigNumbers {
+    /** Runs of at most this many blocks are converted directly, where the recursion would not pay off */
+    private static final int DIRECT_BLOCKS = 32;
+    private static final int[] BLOCK_DIGITS = new int[Character.MAX_RADIX + 1];
+    private static final long[] BLOCK_POWERS = new long[Character.MAX_RADIX + 1];
+
+    static {
+        for (int radix = Character.MIN_RADIX; radix <= Character.MAX_RADIX; radix++) {
+            // The largest number of digits whose value always fits in a long
+            int digits = 0;
+            long power = 1;
+            while (power <= Long.MAX_VALUE / radix) {
+                power *= radix;
+                digits++;
+            }
+            BLOCK_DIGITS[radix] = digits;
+            BLOCK_POWERS[radix] = power;
+        }
+    }
+
+    private BigNumbers() {
+    }
+
+    /**
+     * Converts digits which have already been validated.
+     * @param chars The characters containing the digits, each of which is a valid digit in the radix
+     * @param start The index of the most significant digit
+     * @param end The index after the least significant digit
+     * @param radix The radix
+     * @return The non-negative value of the digits
+     */
+    static BigInteger parseDigits(char[] chars, int start, int end, int radix) {
+        int blockDigits = BLOCK_DIGITS[radix];
+        int blocks = (end - start + blockDigits - 1) / blockDigits;
+        if (blocks <= DIRECT_BLOCKS) {
+            return parseDirectly(chars, start, end, radix);
+        }
+        // powers.get(i) is the radix to the power of blockDigits * 2^i, which is computed once and shared by every level of the recursion
+        List<BigInteger> powers = new ArrayList<>();
+        powers.add(BigInteger.valueOf(BLOCK_POWERS[radix]));
+        return parseBlocks(chars, start, end, radix, blocks, powers);
+    }
+
+    /**
+     * @param blocks The number of blocks the digits are split into, counting from the least significant digit
+     */
+    private static BigInteger parseBlocks(char[] chars, int start, int end, int radix, int blocks, List<BigInteger> powers) {
+        if (blocks <= DIRECT_BLOCKS) {
+            return parseDirectly(chars, start, end, radix);
+        }
+        // The low half is the largest power of two number of blocks below the total, so its power can be found by repeated squaring
+        int level = 31 - Integer.numberOfLeadingZeros(blocks - 1);
+        int lowBlocks = 1 << level;
+        int split = end - lowBlocks * BLOCK_DIGITS[radix];
+        BigInteger high = parseBlocks(chars, start, split, radix, blocks - lowBlocks, powers);
+        BigInteger low = parseBlocks(chars, split, end, radix, lowBlocks, powers);
+        return high.multiply(power(powers, level)).add(low);
+    }
+
+    private static BigInteger power(List<BigInteger> powers, int level) {
+        while (powers.size() <= level) {
+            BigInteger last = powers.get(powers.size() - 1);
+            powers.add(last.multiply(last));
+        }
+        return powers.get(level);
+    }
+
+    /**
+     * Converts a short run of digits a block at a time, in quadratic time.
+     */
+    private static BigInteger parseDirectly(char[] chars, int start, int end, int radix) {
+        int blockDigits = BLOCK_DIGITS[radix];
+        // The first block holds whatever is left over, so that every other block is full
+        int first = start + (end - start - 1) % blockDigits + 1;
+        BigInteger result = BigInteger.valueOf(parseBlock(chars, start, first, radix));
+        BigInteger blockPower = BigInteger.valueOf(BLOCK_POWERS[radix]);
+        for (int i = first; i < end; i += blockDigits) {
+            result = result.multiply(blockPower).add(BigInteger.valueOf(parseBlock(chars, i, i + blockDigits, radix)));
+        }
+        return result;
+    }
+
+    private static long parseBlock(char[] chars, int start, int end, int radix) {
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            char c = chars[i];
+            value = value * radix + (c >= '0' && c <= '9' ? c - '0' : Character.digit(c, radix));
+        }
+        return value;
+    }
+}
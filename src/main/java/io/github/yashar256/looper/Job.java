@@ -0,0 +1,174 @@
+package io.github.yashar256.looper;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * A background job started by an option added with {@link MenuLooper#addAsyncOption}.
+ * The job's task receives its Job so it can report progress with {@link #setProgress} and stop early when {@link #isCancelled} returns true.
+ */
+public class Job {
+    /**
+     * The lifecycle of a job.
+     */
+    public enum State {
+        /** Waiting for one of the other jobs to finish */
+        QUEUED,
+        RUNNING,
+        DONE,
+        /** The task threw an exception */
+        FAILED,
+        CANCELLED
+    }
+
+    private final int id;
+    private final String name;
+    private final Consumer<Job> task;
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private volatile State state = State.QUEUED;
+    private volatile double progress;
+    private volatile boolean cancelled;
+    /** Guards {@link #thread}, so that the thread is only interrupted while it is still running this job */
+    private final Object threadLock = new Object();
+    private Thread thread;
+    private volatile Throwable failure;
+
+    Job(int id, String name, Consumer<Job> task) {
+        this.id = id;
+        this.name = name;
+        this.task = task;
+    }
+
+    /**
+     * @return The number used to refer to this job on the jobs menu
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return The name of the option which started this job
+     */
+    public String getName() {
+        return name;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return How much of the job is complete, between 0 and 1
+     */
+    public double getProgress() {
+        return progress;
+    }
+
+    /**
+     * Reports how much of the job is complete, which is shown on the jobs menu.
+     * @param progress A fraction between 0 and 1
+     */
+    public void setProgress(double progress) {
+        this.progress = Math.max(0, Math.min(1, progress));
+    }
+
+    /**
+     * @return Whether the job was asked to stop. Long-running tasks should check this regularly, since the thread is only interrupted once.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return The exception thrown by a failed job, or null
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    /**
+     * Asks the job to stop. A queued job never starts, and a running job's thread is interrupted.
+     */
+    public void cancel() {
+        cancelled = true;
+        synchronized (threadLock) {
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Waits for the job to finish, whether it completes, fails or is cancelled.
+     * @throws InterruptedException If the waiting thread is interrupted
+     */
+    public void await() throws InterruptedException {
+        finished.await();
+    }
+
+    /**
+     * Waits for the job to finish for at most the given time.
+     * @param timeout The maximum time to wait
+     * @param unit The unit of the timeout
+     * @return Whether the job finished in time
+     * @throws InterruptedException If the waiting thread is interrupted
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return finished.await(timeout, unit);
+    }
+
+    void execute() {
+        synchronized (threadLock) {
+            if (cancelled) {
+                finish(State.CANCELLED);
+                return;
+            }
+            thread = Thread.currentThread();
+            state = State.RUNNING;
+        }
+        try {
+            task.accept(this);
+            progress = 1;
+            finish(cancelled ? State.CANCELLED : State.DONE);
+        } catch (Throwable e) {
+            if (cancelled) {
+                finish(State.CANCELLED);
+            } else {
+                failure = e;
+                finish(State.FAILED);
+            }
+        } finally {
+            synchronized (threadLock) {
+                thread = null;
+            }
+            // Clear an interrupt from cancel() so it does not leak into the next job on this thread. None can arrive once the thread is cleared
+            Thread.interrupted();
+        }
+    }
+
+    /**
+     * Fails the job without running it, such as when its executor rejects it.
+     */
+    void fail(Throwable failure) {
+        this.failure = failure;
+        finish(State.FAILED);
+    }
+
+    void finish(State state) {
+        this.state = state;
+        finished.countDown();
+    }
+
+    @Override
+    public String toString() {
+        switch (state) {
+            case RUNNING:
+                return String.format("#%d %s - running (%.0f%%)", id, name, progress * 100);
+            case FAILED:
+                return String.format("#%d %s - failed: %s", id, name, failure);
+            default:
+                return String.format("#%d %s - %s", id, name, state.name().toLowerCase());
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package io.github.yashar256.looper;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Runs the jobs of a {@link MenuLooper}'s asynchronous options, starting at most a fixed number at once and queueing the rest in order.
+ */
+final class JobManager {
+    private static final int MAX_FINISHED_JOBS = 100;
+
+    private final List<Job> jobs = new ArrayList<>();
+    private final Deque<Job> queue = new ArrayDeque<>();
+    private Executor executor;
+    private int maxConcurrentJobs = Runtime.getRuntime().availableProcessors();
+    private int running;
+    private int nextId = 1;
+
+    synchronized void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    synchronized void setMaxConcurrentJobs(int maxConcurrentJobs) {
+        if (maxConcurrentJobs < 1) {
+            throw new IllegalArgumentException("maxConcurrentJobs must be positive");
+        }
+        this.maxConcurrentJobs = maxConcurrentJobs;
+        startQueuedJobs();
+    }
+
+    synchronized Job submit(String name, Consumer<Job> task) {
+        Job job = new Job(nextId++, name, task);
+        jobs.add(job);
+        queue.add(job);
+        forgetOldJobs();
+        startQueuedJobs();
+        return job;
+    }
+
+    /**
+     * @return A snapshot of the queued, running and recently finished jobs, oldest first
+     */
+    synchronized List<Job> getJobs() {
+        return new ArrayList<>(jobs);
+    }
+
+    synchronized Job getJob(int id) {
+        for (Job job : jobs) {
+            if (job.getId() == id) {
+                return job;
+            }
+        }
+        return null;
+    }
+
+    synchronized void cancel(Job job) {
+        job.cancel();
+        if (queue.remove(job)) {
+            job.finish(Job.State.CANCELLED);
+        }
+    }
+
+    private void startQueuedJobs() {
+        if (executor == null) {
+            executor = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "menu-looper-job");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        while (running < maxConcurrentJobs && !queue.isEmpty()) {
+            Job job = queue.poll();
+            running++;
+            try {
+                executor.execute(() -> {
+                    try {
+                        job.execute();
+                    } finally {
+                        finished();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // The slot is released so that a shut down or saturated executor cannot stop the queue for good
+                running--;
+                job.fail(e);
+            }
+        }
+    }
+
+    private synchronized void finished() {
+        running--;
+        startQueuedJobs();
+    }
+
+    private void forgetOldJobs() {
+        int finished = 0;
+        for (Job job : jobs) {
+            if (isFinished(job)) {
+                finished++;
+            }
+        }
+        for (Iterator<Job> iterator = jobs.iterator(); finished > MAX_FINISHED_JOBS && iterator.hasNext(); ) {
+            if (isFinished(iterator.next())) {
+                iterator.remove();
+                finished--;
+            }
+        }
+    }
+
+    private static boolean isFinished(Job job) {
+        Job.State state = job.getState();
+        return state != Job.State.QUEUED && state != Job.State.RUNNING;
+    }
+}
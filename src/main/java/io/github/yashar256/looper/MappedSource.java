@@ -0,0 +1,119 @@
+package io.github.yashar256.looper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Decodes a memory-mapped file, or a region of one, straight into the {@link Tokenizer}'s buffer, without copying it through a stream first.
+ * Files larger than a single mapping are mapped one window at a time.
+ */
+final class MappedSource implements Readable, Closeable {
+    private static final long WINDOW_SIZE = 1L << 30;
+    private static final Set<String> ASCII_COMPATIBLE = new HashSet<>(Arrays.asList("UTF-8", "US-ASCII", "ISO-8859-1"));
+
+    private final FileChannel channel;
+    private final long end;
+    private final CharsetDecoder decoder;
+    private final boolean asciiCompatible;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private boolean flushed;
+
+    MappedSource(Path file, Charset charset) throws IOException {
+        this(FileChannel.open(file, StandardOpenOption.READ), charset);
+    }
+
+    private MappedSource(FileChannel channel, Charset charset) throws IOException {
+        this(channel, 0, channel.size(), charset);
+    }
+
+    /**
+     * Reads the bytes of the channel from start up to end. Closing the source closes the channel, which may be shared by several sources instead.
+     */
+    MappedSource(FileChannel channel, long start, long end, Charset charset) throws IOException {
+        this.channel = channel;
+        this.end = end;
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.asciiCompatible = ASCII_COMPATIBLE.contains(charset.name());
+        map(start);
+    }
+
+    private void map(long start) throws IOException {
+        windowStart = start;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, end - start));
+    }
+
+    @Override
+    public int read(CharBuffer target) throws IOException {
+        if (flushed) {
+            return -1;
+        }
+        int start = target.position();
+        while (target.hasRemaining()) {
+            if (asciiCompatible && target.hasArray()) {
+                copyAscii(target);
+                if (!target.hasRemaining()) {
+                    break;
+                }
+            }
+            boolean lastWindow = windowStart + window.capacity() == end;
+            CoderResult result = decoder.decode(window, target, lastWindow);
+            if (result.isOverflow()) {
+                break;
+            }
+            if (!lastWindow) {
+                // A character may be split across windows, so the next window starts at the first undecoded byte
+                map(windowStart + window.position());
+            } else {
+                if (decoder.flush(target).isOverflow()) {
+                    break;
+                }
+                flushed = true;
+                break;
+            }
+        }
+        int read = target.position() - start;
+        return read == 0 && flushed ? -1 : read;
+    }
+
+    /**
+     * Copies bytes up to the first non-ASCII one straight into the target, which is much faster than decoding from a direct buffer.
+     * The decoder has no state between calls, since it leaves incomplete characters in the window, so the rest can still be decoded normally.
+     */
+    private void copyAscii(CharBuffer target) {
+        char[] chars = target.array();
+        int offset = target.arrayOffset() + target.position();
+        int start = window.position();
+        int count = Math.min(target.remaining(), window.remaining());
+        int i = 0;
+        while (i < count) {
+            byte b = window.get(start + i);
+            if (b < 0) {
+                break;
+            }
+            chars[offset + i] = (char) b;
+            i++;
+        }
+        window.position(start + i);
+        target.position(target.position() + i);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -24,22 +24,139 @@ package io.github.yashar256.looper;
  *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
  *  SOFTWARE.
  */
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.InputMismatchException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
 import java.util.function.Supplier;
-import java.util.regex.Pattern;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * The MenuLooper class is the main class for creating an MenuLooper. Options can be added using the addOption methods, and the MenuLooper can be started by calling options.startLoop();
  * Note that this class uses a wrapper for {@link Scanner}
  */
 public class MenuLooper implements Runnable {
+    /**
+     * What {@link #run} does when the input ends, such as when piped input runs out or the user presses Ctrl+D.
+     */
+    public enum EndOfInputPolicy {
+        /** Leave the menu as if the quit option was selected */
+        QUIT,
+        /** Throw a {@link NoSuchElementException} out of {@link #run} */
+        THROW
+    }
+
+    private static final Option backOption = new Option("Back", () -> {});
+    private static final Option exitToRootOption = new Option("Exit to root", () -> {});
+    /** Returned instead of an option when the user moved to another page of a paginated menu */
+    private static final Option pageOption = new Option("Change page", () -> {});
+
     private final Option quitOption = new Option("Exit", () -> {});
     private final List<Option> options = new ArrayList<>();
+    private final List<Option> footer = new ArrayList<>(Collections.singletonList(quitOption));
+    private final List<Option> submenuFooter = new ArrayList<>(Arrays.asList(backOption, exitToRootOption));
+    private final MenuRenderer renderer = new MenuRenderer();
+    private final OptionTrie<Option> index = new OptionTrie<>();
+    private final OutputCache cache = new OutputCache();
+    private JobManager jobs;
+    private MenuMetrics metrics;
+    private boolean printMetricsOnExit;
+    private EndOfInputPolicy endOfInputPolicy = EndOfInputPolicy.QUIT;
+    private int pageSize;
+    private Duration idleTimeout;
+    private boolean typeahead;
+    private String idleFallback;
+    private Scanner scanner;
+
+    /**
+     * Creates a MenuLooper which reads from {@link System#in} and writes to {@link System#out}.
+     */
+    public MenuLooper() {
+    }
+
+    /**
+     * Creates a MenuLooper which reads and writes through the given {@link Scanner}.
+     * This allows many MenuLoopers to run in the same program without touching {@link System#in} or {@link System#out}.
+     * @param scanner The scanner used to read selections and passed to each option
+     */
+    public MenuLooper(Scanner scanner) {
+        this.scanner = scanner;
+    }
+
+    /**
+     * Creates a MenuLooper which reads from the given channel and writes to the given output.
+     * @param in The input source
+     * @param out The output sink
+     */
+    public MenuLooper(ReadableByteChannel in, Output out) {
+        this(new Scanner(in, out));
+    }
+
+    /**
+     * Creates a MenuLooper which reads from the given stream and writes to the given output.
+     * @param in The input source
+     * @param out The output sink
+     */
+    public MenuLooper(InputStream in, Output out) {
+        this(new Scanner(in, out));
+    }
+
+    /**
+     * Creates a MenuLooper which reads from the given reader and writes to the given output.
+     * @param in The input source
+     * @param out The output sink
+     */
+    public MenuLooper(Reader in, Output out) {
+        this(new Scanner(in, out));
+    }
+
+    /**
+     * Creates a MenuLooper which reads from the given text and writes to the given output.
+     * @param in The entire input, such as a scripted session
+     * @param out The output sink
+     */
+    public MenuLooper(CharSequence in, Output out) {
+        this(new Scanner(in, out));
+    }
 
     /**
      * Adds an option to the menu.
@@ -51,7 +168,7 @@ public class MenuLooper implements Runnable {
         if (runnable == null) {
           runnable = () -> {};
         }
-        options.add(new Option(name, runnable));
+        add(new Option(name, runnable));
     }
 
     /**
@@ -61,7 +178,357 @@ public class MenuLooper implements Runnable {
      * @param consumer A callback consumer function to be executed when the user selects the option, or `null` to not do anything on selection.
      */
     public void addOption(String name, Consumer<Scanner> consumer) {
-        options.add(new Option(name, consumer));
+        add(new Option(name, consumer));
+    }
+
+    /**
+     * Adds an option which only displays something, such as a report, and remembers what it displayed so that selecting it again displays the same output without running it.
+     * The output is remembered until an option added with {@link #addMutatingOption} invalidates the tag, or {@link #invalidate} is called with it.
+     * The option cannot read input, so that its output only depends on the state the tag describes.
+     * @param name The name of the option, displayed on the menu
+     * @param tag The name of the state the output depends on, such as "accounts"
+     * @param report The function which writes the option's output
+     */
+    public void addCachedOption(String name, String tag, Consumer<Output> report) {
+        Option option = new Option(name, () -> {});
+        option.cacheTag = tag;
+        option.report = report;
+        add(option);
+    }
+
+    /**
+     * Adds an option which changes the state that cached options display, and invalidates their remembered output once it has run.
+     * <b>Note:</b> An option to quit the program is automatically added to the end of the menu.
+     * @param name The name of the option, displayed on the menu
+     * @param runnable A callback runnable function to be executed when the user selects the option
+     * @param invalidatedTags The tags of the cached options whose output the option changes
+     */
+    public void addMutatingOption(String name, Runnable runnable, String... invalidatedTags) {
+        Option option = new Option(name, runnable);
+        option.invalidatedTags = invalidatedTags;
+        add(option);
+    }
+
+    /**
+     * Adds an option which changes the state that cached options display, and invalidates their remembered output once it has run.
+     * <b>Note:</b> An option to quit the program is automatically added to the end of the menu.
+     * @param name The name of the option, displayed on the menu
+     * @param consumer A callback consumer function to be executed when the user selects the option
+     * @param invalidatedTags The tags of the cached options whose output the option changes
+     */
+    public void addMutatingOption(String name, Consumer<Scanner> consumer, String... invalidatedTags) {
+        Option option = new Option(name, consumer);
+        option.invalidatedTags = invalidatedTags;
+        add(option);
+    }
+
+    /**
+     * Discards the remembered output of this menu's cached options which depend on any of the given tags, such as when the state they display is changed outside of the menu or by a submenu.
+     * @param tags The tags
+     */
+    public void invalidate(String... tags) {
+        cache.invalidate(tags);
+    }
+
+    /**
+     * Sets how many bytes of output cached options may remember in total. The least recently used output is discarded once there is more. Defaults to 1 MiB.
+     * @param maxBytes The limit, or 0 to not remember any output
+     */
+    public void setCacheSize(long maxBytes) {
+        cache.setMaxBytes(maxBytes);
+    }
+
+    /**
+     * @return How many times a cached option was selected and its remembered output was displayed
+     */
+    public long getCacheHits() {
+        return cache.getHits();
+    }
+
+    /**
+     * @return How many times a cached option was selected and had to be run, because its output was not remembered
+     */
+    public long getCacheMisses() {
+        return cache.getMisses();
+    }
+
+    /**
+     * Adds an option which runs in the background, so the user returns to the menu straight away instead of waiting for it to finish.
+     * <b>Note:</b> A "Background jobs" submenu is automatically added before the quit option, which lists the jobs and their progress and can wait for or cancel a job.
+     * @param name The name of the option, displayed on the menu
+     * @param task The function to run in the background each time the option is selected
+     */
+    public void addAsyncOption(String name, Runnable task) {
+        addAsyncOption(name, job -> task.run());
+    }
+
+    /**
+     * Adds an option which runs in the background, so the user returns to the menu straight away instead of waiting for it to finish.
+     * <b>Note:</b> A "Background jobs" submenu is automatically added before the quit option, which lists the jobs and their progress and can wait for or cancel a job.
+     * @param name The name of the option, displayed on the menu
+     * @param task The function to run in the background each time the option is selected. It is given its {@link Job} to report progress and check for cancellation.
+     */
+    public void addAsyncOption(String name, Consumer<Job> task) {
+        JobManager jobs = getJobManager();
+        add(new Option(name, (Consumer<Scanner>) scanner -> {
+            Job job = jobs.submit(name, task);
+            scanner.getOutput().println("Started background job #" + job.getId());
+        }));
+    }
+
+    /**
+     * Sets the executor which background jobs run on. Defaults to a pool of daemon threads.
+     * @param executor The executor
+     */
+    public void setJobExecutor(Executor executor) {
+        getJobManager().setExecutor(executor);
+    }
+
+    /**
+     * Sets how many background jobs may run at once. Jobs started beyond this wait in a queue. Defaults to the number of processors.
+     * @param maxConcurrentJobs The maximum number of running jobs
+     */
+    public void setMaxConcurrentJobs(int maxConcurrentJobs) {
+        getJobManager().setMaxConcurrentJobs(maxConcurrentJobs);
+    }
+
+    /**
+     * @return The queued, running and recently finished background jobs, oldest first
+     */
+    public List<Job> getJobs() {
+        return jobs == null ? Collections.emptyList() : jobs.getJobs();
+    }
+
+    private JobManager getJobManager() {
+        if (jobs == null) {
+            jobs = new JobManager();
+            Option jobsOption = new Option("Background jobs", (Supplier<MenuLooper>) () -> createJobsMenu(jobs));
+            footer.add(0, jobsOption);
+            submenuFooter.add(0, jobsOption);
+            renderer.inserted(options.size());
+        }
+        return jobs;
+    }
+
+    private static MenuLooper createJobsMenu(JobManager jobs) {
+        MenuLooper menu = new MenuLooper();
+        menu.addOption("List jobs", scanner -> {
+            List<Job> all = jobs.getJobs();
+            if (all.isEmpty()) {
+                scanner.getOutput().println("No jobs have been started");
+            }
+            for (Job job : all) {
+                scanner.getOutput().println(job.toString());
+            }
+        });
+        menu.addOption("Wait for a job", scanner -> {
+            Job job = jobs.getJob(scanner.nextInt("Job number"));
+            if (job == null) {
+                scanner.getOutput().println("There is no job with that number");
+                return;
+            }
+            scanner.getOutput().flush();
+            try {
+                job.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            scanner.getOutput().println(job.toString());
+        });
+        menu.addOption("Cancel a job", scanner -> {
+            Job job = jobs.getJob(scanner.nextInt("Job number"));
+            if (job == null) {
+                scanner.getOutput().println("There is no job with that number");
+                return;
+            }
+            jobs.cancel(job);
+            scanner.getOutput().println("Cancelled job #" + job.getId());
+        });
+        return menu;
+    }
+
+    /**
+     * Adds a submenu to the menu. The submenu is only built by the supplier when it is first entered, or entered again after {@link #evictSubmenus} was called, so large menu trees do not have to be built up front.
+     * <b>Note:</b> Options to go back and to exit to the root menu are automatically added to the end of the submenu, and the submenu reads through this menu's {@link Scanner}.
+     * @param name The name of the submenu, displayed on the menu
+     * @param supplier A function which creates the submenu and its options
+     */
+    public void addSubmenu(String name, Supplier<MenuLooper> supplier) {
+        add(new Option(name, supplier));
+    }
+
+    /**
+     * Discards every submenu of this menu which has already been built, so that the memory used by them can be reclaimed. Each submenu is built again when it is next entered.
+     */
+    public void evictSubmenus() {
+        for (Option option : options) {
+            option.evictSubmenu();
+        }
+    }
+
+    /**
+     * Removes the first option with the given name from the menu. Options may be added or removed while the MenuLooper is running, and the menu is updated the next time it is displayed.
+     * @param name The name of the option
+     * @return Whether an option was removed
+     */
+    public boolean removeOption(String name) {
+        for (int i = 0; i < options.size(); i++) {
+            if (options.get(i).toString().equals(name)) {
+                Option removed = options.remove(i);
+                renderer.removed(i);
+                cache.remove(removed);
+                index.remove(removed.name, removed);
+                for (String alias : removed.aliases) {
+                    index.remove(alias, removed);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds another name which the first option with the given name can be selected by. Options can always be selected by their number, their name, or the start of their name if no other option starts the same way, regardless of case.
+     * @param name The name of the option
+     * @param alias The other name, such as a shortcut
+     * @throws IllegalArgumentException If there is no option with the given name
+     */
+    public void addAlias(String name, String alias) {
+        for (Option option : options) {
+            if (option.name.equals(name)) {
+                option.aliases.add(alias);
+                index.put(alias, option);
+                return;
+            }
+        }
+        throw new IllegalArgumentException("There is no option named " + name);
+    }
+
+    /**
+     * Lists the options which can be selected by entering the given prefix, for example to complete a partially typed name.
+     * @param prefix The start of a name or alias, ignoring case
+     * @return The names of the matching options, in alphabetical order
+     */
+    public List<String> completeOption(String prefix) {
+        List<String> names = new ArrayList<>();
+        for (Option option : index.startingWith(prefix)) {
+            names.add(option.name);
+        }
+        for (Option option : footer) {
+            if (option.name.regionMatches(true, 0, prefix, 0, prefix.length())) {
+                names.add(option.name);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Finds the options which a name entered instead of a number refers to. An entire name or alias takes priority over names which merely start with it.
+     * @return A single option if the name is not ambiguous, otherwise every option it could refer to
+     */
+    private List<Option> findOptions(String name, List<Option> footer) {
+        List<Option> exact = new ArrayList<>(index.exact(name));
+        for (Option option : footer) {
+            if (option.name.equalsIgnoreCase(name)) {
+                exact.add(option);
+            }
+        }
+        if (!exact.isEmpty()) {
+            return exact;
+        }
+        List<Option> matches = new ArrayList<>(index.resolve(name));
+        for (Option option : footer) {
+            if (option.name.regionMatches(true, 0, name, 0, name.length())) {
+                matches.add(option);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Starts collecting {@link MenuMetrics} for this menu and its submenus: how long each option takes, how long users spend at each prompt, and how often they enter invalid input.
+     * Metrics are not collected unless this is called, and cost nothing when they are not.
+     * @return The metrics, which can also be registered as a JMX MBean with {@link MenuMetrics#registerMBean}
+     */
+    public MenuMetrics enableMetrics() {
+        if (metrics == null) {
+            metrics = new MenuMetrics();
+        }
+        return metrics;
+    }
+
+    /**
+     * @return The metrics collected for this menu, or null if {@link #enableMetrics} has not been called
+     */
+    public MenuMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets whether a summary of the {@link MenuMetrics} is printed when the user selects the quit option. Enables metrics if they are not already. Defaults to false.
+     * @param printMetricsOnExit Whether to print the summary
+     */
+    public void setPrintMetricsOnExit(boolean printMetricsOnExit) {
+        if (printMetricsOnExit) {
+            enableMetrics();
+        }
+        this.printMetricsOnExit = printMetricsOnExit;
+    }
+
+    /**
+     * Sets what happens when the input ends while the menu or one of its options is waiting for input. Defaults to {@link EndOfInputPolicy#QUIT}.
+     * @param endOfInputPolicy The policy
+     */
+    public void setEndOfInputPolicy(EndOfInputPolicy endOfInputPolicy) {
+        this.endOfInputPolicy = endOfInputPolicy;
+    }
+
+    /**
+     * Splits menus with more than the given number of options into pages, so that only one page of options is displayed at a time.
+     * Users enter {@code >} and {@code <} to move to the next or previous page, or {@code #n} to jump to page n.
+     * Options keep their numbers across pages, and the footer is displayed on every page. Defaults to 0, which displays every option at once.
+     * @param pageSize The number of options on each page, or 0 to disable pagination
+     */
+    public void setPageSize(int pageSize) {
+        if (pageSize < 0) {
+            throw new IllegalArgumentException("pageSize must not be negative");
+        }
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Lets users type several selections and answers ahead, such as {@code 3 foo 3 bar 2 1}, without the menu or prompts being displayed for the ones they already answered.
+     * The menu and prompts are only displayed once everything typed so far has been used. Errors are always displayed. Defaults to false.
+     * @param typeahead Whether to skip displaying the menu and prompts while typed input remains
+     */
+    public void setTypeahead(boolean typeahead) {
+        this.typeahead = typeahead;
+    }
+
+    /**
+     * Selects an option automatically if the user does not select one in time, such as to log out of an unattended kiosk.
+     * The timeout starts again every time the menu is displayed, and only applies to this menu rather than its submenus or the input read by options.
+     * It relies on being able to wait for input without reading it, so it has no effect on input read from channels which are not selectable, such as files.
+     * @param timeout How long the menu waits for a selection, or null to wait forever
+     * @param fallbackOption The name of the option which is selected when the time runs out, such as "Exit", or null to leave the menu. If there is no such option by then, the menu is left instead.
+     */
+    public void setIdleTimeout(Duration timeout, String fallbackOption) {
+        this.idleTimeout = timeout;
+        this.idleFallback = fallbackOption;
+    }
+
+    /**
+     * @return The number of pages the options are split into, which is 1 if pagination is disabled
+     */
+    private int pageCount() {
+        int size = pageSize;
+        return size == 0 || options.size() <= size ? 1 : (options.size() + size - 1) / size;
+    }
+
+    private void add(Option option) {
+        options.add(option);
+        renderer.inserted(options.size() - 1);
+        index.put(option.name, option);
     }
 
     /**
@@ -69,33 +536,168 @@ public class MenuLooper implements Runnable {
      */
     @Override
     public void run() {
-        options.add(quitOption);
+        run(getScanner());
+    }
 
-        StringBuilder menuBuilder = new StringBuilder("Select an option from the list bellow");
-        for (int i = 0; i < options.size(); i++) {
-            menuBuilder.append(String.format("%n[%d] - %s", i + 1, options.get(i)));
+    /**
+     * Starts the option looper, reading from and writing through the given scanner instead of this MenuLooper's own.
+     * The same MenuLooper may be run by many threads at once, each with its own scanner, as long as no options are added or removed while it is running.
+     * If the input ends, the looper quits or throws according to {@link #setEndOfInputPolicy}.
+     * @param scanner The scanner to read selections from and pass to the options
+     */
+    public void run(Scanner scanner) {
+        scanner.metrics = metrics;
+        scanner.typeahead = typeahead;
+        try {
+            boolean quit = !loop(scanner, true);
+            if (quit && printMetricsOnExit) {
+                scanner.getOutput().println(metrics.getSummary());
+            }
+        } catch (EndOfInputException e) {
+            if (endOfInputPolicy == EndOfInputPolicy.THROW) {
+                throw e;
+            }
+        } finally {
+            scanner.getOutput().flush();
+            scanner.endRecording();
         }
-        
-        String menuText = menuBuilder.toString();
-        Scanner scanner = new Scanner();
-        
+    }
+
+    /**
+     * Runs the selections given on the command line, such as with {@code menu.run(args)} in {@code main}, and then leaves the menu without displaying it.
+     * Each argument is read as if it had been typed on its own line: a selection by number or name, followed by whatever input that option reads, so {@code java Tool Add 1 2} selects "Add" and answers its two prompts.
+     * As with {@link #runScript}, prompts are not displayed and a {@link ScriptInputException} is thrown for any invalid or missing input. If there are no arguments, the menu is run as by {@link #run()}.
+     * Since neither the menu nor {@link System#in} is touched, this is the quickest way to run a program which is started for a single selection.
+     * @param args The selections and their input
+     * @throws ScriptInputException If the arguments contain input that cannot be used
+     */
+    public void run(String... args) {
+        if (args.length == 0) {
+            run();
+            return;
+        }
+        Output out = scanner == null ? new Output(System.out) : scanner.getOutput();
+        Scanner argsScanner = new Scanner(CharBuffer.wrap(String.join("\n", args)), out, out, false);
+        argsScanner.metrics = metrics;
+        try {
+            loop(argsScanner, true);
+        } finally {
+            out.flush();
+        }
+    }
+
+    /**
+     * Runs a script of selections without any user interaction. The script is memory-mapped and read as if it had been typed in: each selection is followed by whatever input that option reads.
+     * The menu and prompts are not displayed, and instead of asking again, a {@link ScriptInputException} with the line and column of the problem is thrown for any invalid input.
+     * The script ends when the quit option is selected or there is no more input.
+     * @param script The script file, encoded in the same charset as this MenuLooper's output
+     * @throws IOException If the script cannot be read
+     * @throws ScriptInputException If the script contains input that cannot be used
+     */
+    public void runScript(Path script) throws IOException {
+        Output out = scanner == null ? new Output(System.out) : scanner.getOutput();
+        try (MappedSource source = new MappedSource(script, out.charset())) {
+            Scanner scriptScanner = new Scanner(source, out, out, false);
+            scriptScanner.metrics = metrics;
+            loop(scriptScanner, true);
+            IOException readError = scriptScanner.tokenizer.ioException();
+            if (readError != null) {
+                throw readError;
+            }
+        } finally {
+            out.flush();
+        }
+    }
+
+    /**
+     * Displays this menu and calls the selected options until the user leaves it.
+     * @param scanner The scanner to read selections from and pass to the options
+     * @param root Whether this is the root menu, rather than a submenu
+     * @return Whether the user chose to exit to the root menu, rather than going back a single level
+     */
+    private boolean loop(Scanner scanner, boolean root) {
+        List<Option> footer = root ? this.footer : submenuFooter;
+        Output out = scanner.getOutput();
+        // The page is kept per call rather than per menu, since a served menu is displayed to many users at once
+        Pager pager = new Pager();
+
         while (true) {
-            int option = scanner.nextInt(menuText) - 1;
-            while (option < 0 || option >= options.size()) {
-                System.out.println("Could not recognise that option. Please enter an option from the list above");
-                option = scanner.nextInt() - 1;
+            int pages = pageCount();
+            pager.page = Math.min(pager.page, pages - 1);
+            // The scanner's setting is used so that submenus follow the root menu
+            if (scanner.interactive && !(scanner.typeahead && scanner.tokenizer.hasBufferedToken())) {
+                out.write(pages == 1 ? renderer.render(options, footer, out.charset()) : renderer.renderPage(options, footer, out.charset(), pager.page, pageSize));
+            } else if (!scanner.hasNext()) {
+                // The end of a script leaves every level of the menu
+                return true;
+            }
+            scanner.awaitAnswer(MenuMetrics.MENU_PROMPT);
+            Duration timeout = idleTimeout;
+            if (timeout != null) {
+                scanner.tokenizer.setDeadline(Scanner.deadlineAfter(timeout));
+            }
+            Option selected;
+            try {
+                selected = scanner.nextSelection(this, footer, pages == 1 ? null : pager);
+            } finally {
+                scanner.tokenizer.clearDeadline();
+            }
+            if (selected == null) {
+                String fallbackName = idleFallback;
+                List<Option> fallback = fallbackName == null ? Collections.<Option>emptyList() : findOptions(fallbackName, footer);
+                if (fallback.size() != 1) {
+                    return false;
+                }
+                selected = fallback.get(0);
             }
+            // Options are free to write to System.out directly, so anything buffered must be written first
+            out.flush();
 
-            if (option == options.size() - 1) {
-              return;
+            if (selected == pageOption) {
+                continue;
+            }
+            if (selected == quitOption || selected == backOption) {
+                return false;
+            }
+            if (selected == exitToRootOption) {
+                return true;
+            }
+            MenuMetrics metrics = scanner.metrics;
+            long start = metrics == null ? 0 : System.nanoTime();
+            boolean exitedToRoot = false;
+            if (selected.report != null) {
+                cache.write(selected, selected.cacheTag, selected.report, out);
             } else {
-              options.get(option).callOption(scanner);
+                try {
+                    exitedToRoot = selected.callOption(scanner);
+                } finally {
+                    // Even an option which failed part of the way may have changed something
+                    if (selected.invalidatedTags != null) {
+                        cache.invalidate(selected.invalidatedTags);
+                    }
+                }
+            }
+            if (metrics != null) {
+                metrics.recordOption(selected.toString(), System.nanoTime() - start);
+            }
+            if (exitedToRoot && !root) {
+                return true;
             }
         }
     }
 
     /**
-     * A wrapper for {@link java.util.Scanner} which is used by {@link MenuLooper} to read user input from the console.
+     * @return The scanner used by this MenuLooper, creating one which reads from {@link System#in} if none was given
+     */
+    public Scanner getScanner() {
+        if (scanner == null) {
+            scanner = new Scanner();
+        }
+        return scanner;
+    }
+
+    /**
+     * A replacement for {@link java.util.Scanner} which is used by {@link MenuLooper} to read user input from the console.
      *
      * The methods are for the most part analogous to those used in {@link java.util.Scanner}, with a few exceptions:
      * <ul>
@@ -112,342 +714,1704 @@ public class MenuLooper implements Runnable {
      *    </pre>
      *   </li>
      * </ul>
+     * By default a Scanner reads from {@link System#in} and writes to {@link System#out}, but any input source and {@link Output} can be given instead.
+     * Buffered output is always flushed before the Scanner waits for more input.
+     *
+     * Tokens are split on whitespace and parsed by hand rather than with regular expressions, so reading numbers does not allocate.
+     * Unlike {@link java.util.Scanner}, numbers are not localized: group separators such as "1,000" are not accepted.
      */
     public static class Scanner {
-        private static final Pattern booleanPattern = Pattern.compile("[tTfFyYnN].*");
-      
-        private final java.util.Scanner stdScanner = new java.util.Scanner(System.in);
+        private final Tokenizer tokenizer;
+        private final Output out;
+        private final Output err;
+        private final boolean interactive;
+        private static final int STREAM_CHARACTERISTICS = Spliterator.ORDERED | Spliterator.NONNULL;
+        /** How often sources which can only be asked whether they are ready are checked while waiting for a deadline */
+        private static final long POLL_INTERVAL = TimeUnit.MILLISECONDS.toNanos(10);
+        private static final Duration MAX_TIMEOUT = Duration.ofDays(365);
+
+        private final ParseResult result = new ParseResult();
         private boolean shouldCallNextLineTwice = false;
-        
+        private MenuMetrics metrics;
+        private String pendingPrompt;
+        private long promptStart;
+        private SessionRecorder.Session recording;
+        private int maxNumberLength = 1 << 24;
+        /** Whether prompts are skipped when their answer has already been typed */
+        private boolean typeahead;
+        /** Whether prompts are flushed straight away, so they stay in order with options which print to {@link System#out} directly */
+        private boolean flushPrompts;
+
+        /**
+         * Creates a Scanner which reads from {@link System#in} and writes to {@link System#out} and {@link System#err}.
+         */
+        public Scanner() {
+            this(new InputStreamReader(System.in), new Output(System.out), new Output(System.err));
+            flushPrompts = true;
+        }
+
+        /**
+         * Creates a Scanner which reads from the given channel, decoded with the output's charset. Prompts and errors are both written to the given output.
+         * @param in The input source
+         * @param out The output sink
+         */
+        public Scanner(ReadableByteChannel in, Output out) {
+            this(in instanceof SelectableChannel ? new SelectableSource(in, out.charset()) : Channels.newReader(in, out.charset().newDecoder(), -1), out, out);
+            if (!(in instanceof SelectableChannel)) {
+                // Channels.newReader is never ready while its buffer is empty, so other channels cannot be waited on
+                tokenizer.setWaiter(null);
+            }
+        }
+
+        /**
+         * Creates a Scanner which reads from the given stream, decoded with the output's charset. Prompts and errors are both written to the given output.
+         * @param in The input source
+         * @param out The output sink
+         */
+        public Scanner(InputStream in, Output out) {
+            this(new InputStreamReader(in, out.charset()), out, out);
+        }
+
+        /**
+         * Creates a Scanner which reads from the given reader. Prompts and errors are both written to the given output.
+         * @param in The input source
+         * @param out The output sink
+         */
+        public Scanner(Reader in, Output out) {
+            this(in, out, out);
+        }
+
+        /**
+         * Creates a Scanner which reads from the given text. Prompts and errors are both written to the given output.
+         * @param in The entire input, such as a scripted session
+         * @param out The output sink
+         */
+        public Scanner(CharSequence in, Output out) {
+            this(CharBuffer.wrap(in), out, out);
+        }
+
+        private Scanner(Readable in, Output out, Output err) {
+            this(in, out, err, true);
+        }
+
+        /**
+         * @param interactive Whether to display prompts and ask again after invalid input, rather than throwing a {@link ScriptInputException}
+         */
+        Scanner(Readable in, Output out, Output err, boolean interactive) {
+            this.out = out;
+            this.err = err;
+            this.interactive = interactive;
+            // Whatever was prompted must be visible before waiting on the user
+            this.tokenizer = new Tokenizer(in, out::flush);
+            tokenizer.setWaiter(waiterFor(in));
+            if (!interactive) {
+                tokenizer.trackPosition();
+            }
+        }
+
+        /**
+         * @return A way to wait for the source to have input, or null if it either never blocks or cannot be waited on
+         */
+        private static Tokenizer.InputWaiter waiterFor(Readable in) {
+            if (in instanceof Tokenizer.InputWaiter) {
+                return (Tokenizer.InputWaiter) in;
+            }
+            if (in instanceof Reader) {
+                Reader reader = (Reader) in;
+                return nanos -> pollReady(reader, nanos);
+            }
+            return null;
+        }
+
+        private static boolean pollReady(Reader reader, long nanos) throws IOException {
+            long deadline = System.nanoTime() + nanos;
+            while (!reader.ready()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                try {
+                    TimeUnit.NANOSECONDS.sleep(Math.min(remaining, POLL_INTERVAL));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return The {@link System#nanoTime} after the given timeout, which is capped so that it cannot overflow
+         */
+        static long deadlineAfter(Duration timeout) {
+            long nanos = timeout.compareTo(MAX_TIMEOUT) > 0 ? MAX_TIMEOUT.toNanos() : Math.max(0, timeout.toNanos());
+            return System.nanoTime() + nanos;
+        }
+
+        /**
+         * Records everything this Scanner reads and writes from now on as a new session, which can be replayed with {@link SessionReplayer}.
+         * @param recorder The recorder to write the session to
+         */
+        public void setRecorder(SessionRecorder recorder) {
+            recording = recorder.startSession(out.charset());
+            tokenizer.startRecording();
+            out.recording = recording;
+        }
+
+        /**
+         * Records input which was consumed without being answered, such as rejected input just before the end of the input, and flushes the recorder.
+         */
+        void endRecording() {
+            if (recording != null) {
+                String rest = tokenizer.takeRecorded();
+                if (!rest.isEmpty()) {
+                    recording.record(SessionRecorder.TOKEN, rest);
+                }
+                recording.flush();
+            }
+        }
+
+        /**
+         * Returns the output which prompts are written to. Options may write to it directly instead of {@link System#out}.
+         * @return The output sink
+         */
+        public Output getOutput() {
+            return out;
+        }
+
+        /**
+         * Returns whether there is another word to read, waiting for more input if necessary.
+         * @return False if the input has ended
+         */
+        public boolean hasNext() {
+            return tokenizer.hasToken();
+        }
+
+        /**
+         * Prompts the user to enter a word.
+         * <b>This is not the same as {@link #nextLine} which enters the next complete line entered.</b>
+         * @param prompt The prompt
+         * @return The next word
+         */
+        public String next(String prompt) {
+            prompt(prompt);
+            return next();
+        }
+
+        /**
+         * Returns the next word entered. 
+         * <b>This is not the same as {@link #nextLine} which enters the next complete line entered.</b>
+         * @return The next word
+         */
+        public String next() {
+            // Only used to fix nextLine() blank input bug, not input validation
+            shouldCallNextLineTwice = true;
+            String token = tokenizer.token();
+            if (token == null) {
+                retry(ParseResult.Status.END_OF_INPUT, "string");
+            }
+            tokenizer.consumeToken();
+            answered(SessionRecorder.TOKEN);
+            return token;
+        }
+
+        /**
+         * Prompts the user to input an integer. Automatically asks again if the user does not enter a valid response.
+         * @param prompt The prompt
+         * @return The next integer as a BigInteger
+         */
+        public BigInteger nextBigInteger(String prompt) {
+            prompt(prompt);
+            return nextBigInteger();
+        }
+
+        /**
+         * Returns the next integer inputted by the user. Automatically asks again if the user does not enter a valid response.
+         * @return The next integer as a BigInteger
+         */
+        public BigInteger nextBigInteger() {
+            return nextBigInteger(10);
+        }
+
+        /**
+         * Prompts the user to input an integer. Automatically asks again if the user does not enter a valid response.
+         * @param prompt The prompt
+         * @param radix The radix
+         * @return The next integer as a BigInteger
+         */
+        public BigInteger nextBigInteger(String prompt, int radix) {
+            prompt(prompt);
+            return nextBigInteger(radix);
+        }
+
+        /**
+         * Returns the next integer inputted by the user. Automatically asks again if the user does not enter a valid response.
+         * @param radix The radix
+         * @return The next integer as a BigInteger
+         */
+        public BigInteger nextBigInteger(int radix) {
+            if (radix < Character.MIN_RADIX || radix > Character.MAX_RADIX) {
+                throw new IllegalArgumentException("radix must be between " + Character.MIN_RADIX + " and " + Character.MAX_RADIX);
+            }
+            while (true) {
+                int status = tokenizer.scanBigInteger(radix, maxNumberLength);
+                if (status == Tokenizer.OK) {
+                    shouldCallNextLineTwice = true;
+                    tokenizer.consumeToken();
+                    answered(SessionRecorder.TOKEN);
+                    return tokenizer.bigIntegerValue();
+                }
+                retry(ParseResult.status(status), "integer");
+            }
+        }
+
+        /**
+         * Prompts the user to input a decimal. Automatically asks again if the user does not enter a valid response.
+         * @param prompt The prompt
+         * @return The next integer as a BigDecimal
+         */
+        public BigDecimal nextBigDecimal(String prompt) {
+            prompt(prompt);
+            return nextBigDecimal();
+        }
+
+        /**
+         * Returns the next decimal inputted by the user. Automatically asks again if the user does not enter a valid response.
+         * @return The next decimal as a BigDecimal
+         */
+        public BigDecimal nextBigDecimal() {
+            while (true) {
+                int status = tokenizer.scanBigDecimal(maxNumberLength);
+                if (status == Tokenizer.OK) {
+                    shouldCallNextLineTwice = true;
+                    tokenizer.consumeToken();
+                    answered(SessionRecorder.TOKEN);
+                    return tokenizer.bigDecimalValue();
+                }
+                retry(ParseResult.status(status), "decimal");
+            }
+        }
+
+        /**
+         * Sets the most characters a number read by {@link #nextBigInteger} or {@link #nextBigDecimal} may have, including its sign.
+         * Longer numbers are rejected as invalid input without being read into memory in full. Defaults to 16,777,216.
+         * @param maxNumberLength The maximum length
+         */
+        public void setMaxNumberLength(int maxNumberLength) {
+            if (maxNumberLength < 1) {
+                throw new IllegalArgumentException("maxNumberLength must be positive");
+            }
+            this.maxNumberLength = maxNumberLength;
+        }
+
+        /**
+         * Prompts the user to input a boolean, Any word starting with "T" or "Y" (regardless of case) will be interpreted as true, and vice versa for "F" and "N". Automatically asks again if the user does not enter a valid response.
+         * @param prompt The prompt
+         * @return The next true/false or yes/no as a boolean
+         */
+        public boolean nextBoolean(String prompt) {
+            prompt(prompt);
+            return nextBoolean();
+        }
+
+        /**
+         * Returns the next boolean inputted by the user. Any word starting with "T" or "Y" (regardless of case) will be interpreted as true, and vice versa for "F" and "N". Automatically asks again if the user does not enter a valid response.
+         * @return The next integer as a BigInteger
+         */
+        public boolean nextBoolean() {
+            while (true) {
+                ParseResult result = tryNextBoolean();
+                if (result.isOk()) {
+                    return result.booleanValue();
+                }
+                retry(result.getStatus(), "boolean");
+            }
+        }
+
+        /**
+         * Prompts the user to input a byte. Automatically asks again if the user does not enter a valid response.
+         * @param prompt The prompt
+         * @return The next integer as a byte
+         */
+        public byte nextByte(String prompt) {
+            prompt(prompt);
+            return nextByte();
+        }
+
+        /**
+         * Returns the next integer inputted by the user. Automatically asks again if the user does not enter a valid response.
+         * @return The next integer as a byte
+         */
+        public byte nextByte() {
+            return (byte) nextIntegral(10, Byte.MIN_VALUE, Byte.MAX_VALUE);
+        }
+
+        /**
+         * Prompts the user to input a byte. Automatically asks again if the user does not enter a valid response.
+         * @param prompt The prompt
+         * @param radix The radix
+         * @return The next integer as a byte
+         */
+        public byte nextByte(String prompt, int radix) {
+            prompt(prompt);
+            return nextByte(radix);
+        }
+
+        /**
+         * Returns the next integer inputted by the user. Automatically asks again if the user does not enter a valid response.
+         * @param radix The radix
+         * @return The next integer as a byte
+         */
+        public byte nextByte(int radix) {
+            return (byte) nextIntegral(radix, Byte.MIN_VALUE, Byte.MAX_VALUE);
+        }
+
+        /**
+         * Prompts the user to input a decimal. Automatically asks again if the user does not enter a valid response.
+         * @param prompt The prompt
+         * @return The next decimal as a double
+         */
+        public double nextDouble(String prompt) {
+            prompt(prompt);
+            return nextDouble();
+        }
+
+        /**
+         * Returns the next decimal inputted by the user. Automatically asks again if the user does not enter a valid response.
+         * @return The next decimal as a double
+         */
+        public double nextDouble() {
+            while (true) {
+                ParseResult result = tryNextDouble();
+                if (result.isOk()) {
+                    return result.doubleValue();
+                }
+                retry(result.getStatus(), "decimal");
+            }
+        }
+
+        /**
+         * Prompts the user to input a decimal. Automatically asks again if the user does not enter a valid response.
+         * @param prompt The prompt
+         * @return The next decimal as a float
+         */
+        public float nextFloat(String prompt) {
+            prompt(prompt);
+            return nextFloat();
+        }
+
+        /**
+         * Returns the next decimal inputted by the user. Automatically asks again if the user does not enter a valid response.
+         * @return The next decimal as a float
+         */
+        public float nextFloat() {
+            while (true) {
+                ParseResult result = tryNextFloat();
+                if (result.isOk()) {
+                    return result.floatValue();
+                }
+                retry(result.getStatus(), "decimal");
+            }
+        }
+
+        /**
+         * Prompts the user to input an integer. Automatically asks again if the user does not enter a valid response.
+         * @param prompt The prompt
+         * @return The next integer as an int
+         */
+        public int nextInt(String prompt) {
+            prompt(prompt);
+            return nextInt();
+        }
+
+        /**
+         * Returns the next integer inputted by the user. Automatically asks again if the user does not enter a valid response.
+         * @return The next integer as an int
+         */
+        public int nextInt() {
+            return (int) nextIntegral(10, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        }
+
+        /**
+         * Prompts the user to input an integer. Automatically asks again if the user does not enter a valid response.
+         * @param prompt The prompt
+         * @param radix The radix
+         * @return The next integer as an int
+         */
+        public int nextInt(String prompt, int radix) {
+            prompt(prompt);
+            return nextInt(radix);
+        }
+
+        /**
+         * Returns the next integer inputted by the user. Automatically asks again if the user does not enter a valid response.
+         * @param radix The radix
+         * @return The next integer as an int
+         */
+        public int nextInt(int radix) {
+            return (int) nextIntegral(radix, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        }
+
+        /**
+         * Prompts the user to enter a String on the console
+         * @param prompt The prompt
+         * @return The next line entered
+         */
+        public String nextLine(String prompt) {
+            prompt(prompt);
+            return nextLine();
+        }
+
+        /**
+         * Returns the next line entered by the user
+         * @return The next integer as a BigInteger
+         */
+        public String nextLine() {
+            String line = readLine();
+            if (line == null) {
+                if (!interactive) {
+                    throw tokenizer.error("Expected a line but the script ended");
+                }
+                throw new EndOfInputException("No line found");
+            }
+            return line;
+        }
+
+        /**
+         * Prompts the user to input an integer, giving up if no valid integer is entered before the timeout. Automatically asks again if the user does not enter a valid response in time.
+         * @param prompt The prompt
+         * @param timeout How long to wait for, including any attempts which were not valid
+         * @return The next integer as an int, or an empty OptionalInt if the time ran out
+         */
+        public OptionalInt nextInt(String prompt, Duration timeout) {
+            prompt(prompt);
+            ParseResult result = untilTimeout(timeout, "integer", () -> tryNextIntegral(10, Integer.MIN_VALUE, Integer.MAX_VALUE));
+            return result.isOk() ? OptionalInt.of(result.intValue()) : OptionalInt.empty();
+        }
+
+        /**
+         * Prompts the user to input an integer, giving up if no valid integer is entered before the timeout. Automatically asks again if the user does not enter a valid response in time.
+         * @param prompt The prompt
+         * @param timeout How long to wait for, including any attempts which were not valid
+         * @return The next integer as a long, or an empty OptionalLong if the time ran out
+         */
+        public OptionalLong nextLong(String prompt, Duration timeout) {
+            prompt(prompt);
+            ParseResult result = untilTimeout(timeout, "integer", () -> tryNextIntegral(10, Long.MIN_VALUE, Long.MAX_VALUE));
+            return result.isOk() ? OptionalLong.of(result.longValue()) : OptionalLong.empty();
+        }
+
+        /**
+         * Prompts the user to input a decimal, giving up if no valid decimal is entered before the timeout. Automatically asks again if the user does not enter a valid response in time.
+         * @param prompt The prompt
+         * @param timeout How long to wait for, including any attempts which were not valid
+         * @return The next decimal as a double, or an empty OptionalDouble if the time ran out
+         */
+        public OptionalDouble nextDouble(String prompt, Duration timeout) {
+            prompt(prompt);
+            ParseResult result = untilTimeout(timeout, "decimal", this::tryNextDouble);
+            return result.isOk() ? OptionalDouble.of(result.doubleValue()) : OptionalDouble.empty();
+        }
+
+        /**
+         * Prompts the user to input a line, giving up if no complete line is entered before the timeout.
+         * @param prompt The prompt
+         * @param timeout How long to wait for
+         * @return The next line, or an empty Optional if the time ran out
+         */
+        public Optional<String> nextLine(String prompt, Duration timeout) {
+            prompt(prompt);
+            tokenizer.setDeadline(deadlineAfter(timeout));
+            String line;
+            try {
+                line = readLine();
+            } finally {
+                tokenizer.clearDeadline();
+            }
+            if (line == null && tokenizer.timedOut()) {
+                return Optional.empty();
+            }
+            return Optional.of(line == null ? nextLine() : line);
+        }
+
+        /**
+         * Reads an integer without asking again or throwing if the input is invalid, waiting for at most the given time.
+         * @param timeout How long to wait for input
+         * @return The result, which is {@link ParseResult.Status#TIMEOUT} if nothing was entered in time
+         */
+        public ParseResult tryNextInt(Duration timeout) {
+            return within(deadlineAfter(timeout), () -> tryNextIntegral(10, Integer.MIN_VALUE, Integer.MAX_VALUE));
+        }
+
+        /**
+         * Reads an integer without asking again or throwing if the input is invalid, waiting for at most the given time.
+         * @param timeout How long to wait for input
+         * @return The result, which is {@link ParseResult.Status#TIMEOUT} if nothing was entered in time
+         */
+        public ParseResult tryNextLong(Duration timeout) {
+            return within(deadlineAfter(timeout), () -> tryNextIntegral(10, Long.MIN_VALUE, Long.MAX_VALUE));
+        }
+
+        /**
+         * Reads a decimal without asking again or throwing if the input is invalid, waiting for at most the given time.
+         * @param timeout How long to wait for input
+         * @return The result, which is {@link ParseResult.Status#TIMEOUT} if nothing was entered in time
+         */
+        public ParseResult tryNextDouble(Duration timeout) {
+            return within(deadlineAfter(timeout), this::tryNextDouble);
+        }
+
+        /**
+         * Reads with the given deadline, turning running out of time into {@link ParseResult.Status#TIMEOUT}.
+         */
+        private ParseResult within(long deadline, Supplier<ParseResult> read) {
+            tokenizer.setDeadline(deadline);
+            try {
+                ParseResult result = read.get();
+                if (result.getStatus() == ParseResult.Status.END_OF_INPUT && tokenizer.timedOut()) {
+                    return this.result.set(Tokenizer.TIMEOUT, 0, 0);
+                }
+                return result;
+            } finally {
+                tokenizer.clearDeadline();
+            }
+        }
+
+        /**
+         * Reads until valid input is entered or the time runs out, asking again after invalid input.
+         */
+        private ParseResult untilTimeout(Duration timeout, String typeName, Supplier<ParseResult> read) {
+            long deadline = deadlineAfter(timeout);
+            while (true) {
+                ParseResult result = within(deadline, read);
+                if (result.isOk() || result.getStatus() == ParseResult.Status.TIMEOUT) {
+                    return result;
+                }
+                retry(result.getStatus(), typeName);
+            }
+        }
+
+        /**
+         * @return The next line, or null at the end of input
+         */
+        private String readLine() {
+            // The rest of the last token's line is skipped, unless looking for a token has already moved past it
+            if (shouldCallNextLineTwice && tokenizer.lineHasToken()) {
+              tokenizer.skipLine();
+            }
+            shouldCallNextLineTwice = false;
+
+            String line = tokenizer.readLine();
+            if (line != null) {
+                answered(SessionRecorder.LINE);
+            }
+            return line;
+        }
+
+        /**
+         * Prompts the user to input an integer. Automatically asks again if the user does not enter a valid response.
+         * @param prompt The prompt
+         * @return The next integer as a long
+         */
+        public long nextLong(String prompt) {
+            prompt(prompt);
+            return nextLong();
+        }
+
+        /**
+         * Returns the next integer inputted by the user. Automatically asks again if the user does not enter a valid response.
+         * @return The next integer as a long
+         */
+        public long nextLong() {
+            return nextIntegral(10, Long.MIN_VALUE, Long.MAX_VALUE);
+        }
+
+        /**
+         * Prompts the user to input an integer. Automatically asks again if the user does not enter a valid response.
+         * @param prompt The prompt
+         * @param radix The radix
+         * @return The next integer as a long
+         */
+        public long nextLong(String prompt, int radix) {
+            prompt(prompt);
+            return nextLong(radix);
+        }
+
+        /**
+         * Returns the next integer inputted by the user. Automatically asks again if the user does not enter a valid response.
+         * @param radix The radix
+         * @return The next integer as a long
+         */
+        public long nextLong(int radix) {
+            return nextIntegral(radix, Long.MIN_VALUE, Long.MAX_VALUE);
+        }
+
+        /**
+         * Prompts the user to input an integer. Automatically asks again if the user does not enter a valid response.
+         * @param prompt The prompt
+         * @return The next integer as a BigInteger
+         */
+        public short nextShort(String prompt) {
+            prompt(prompt);
+            return nextShort();
+        }
+
+        /**
+         * Returns the next integer inputted by the user. Automatically asks again if the user does not enter a valid response.
+         * @return The next integer as a short
+         */
+        public short nextShort() {
+            return (short) nextIntegral(10, Short.MIN_VALUE, Short.MAX_VALUE);
+        }
+
+        /**
+         * Prompts the user to input an integer. Automatically asks again if the user does not enter a valid response.
+         * @param prompt The prompt
+         * @param radix The radix
+         * @return The next integer as a BigInteger
+         */
+        public short nextShort(String prompt, int radix) {
+            prompt(prompt);
+            return nextShort(radix);
+        }
+
+        /**
+         * Returns the next integer inputted by the user. Automatically asks again if the user does not enter a valid response.
+         * @param radix The radix
+         * @return The next integer as a short
+         */
+        public short nextShort(int radix) {
+            return (short) nextIntegral(radix, Short.MIN_VALUE, Short.MAX_VALUE);
+        }
+
+        /**
+         * Prompts the user to input the given number of integers, separated by spaces or new lines. Automatically asks again for any which are not valid.
+         * @param prompt The prompt
+         * @param count How many to read
+         * @return The integers as an array of ints
+         */
+        public int[] nextInts(String prompt, int count) {
+            prompt(prompt);
+            return nextInts(count);
+        }
+
+        /**
+         * Returns the given number of integers inputted by the user, separated by spaces or new lines. Automatically asks again for any which are not valid.
+         * @param count How many to read
+         * @return The integers as an array of ints
+         */
+        public int[] nextInts(int count) {
+            return nextInts(count, 10);
+        }
+
+        /**
+         * Prompts the user to input the given number of integers, separated by spaces or new lines. Automatically asks again for any which are not valid.
+         * @param prompt The prompt
+         * @param count How many to read
+         * @param radix The radix
+         * @return The integers as an array of ints
+         */
+        public int[] nextInts(String prompt, int count, int radix) {
+            prompt(prompt);
+            return nextInts(count, radix);
+        }
+
+        /**
+         * Returns the given number of integers inputted by the user, separated by spaces or new lines. Automatically asks again for any which are not valid.
+         * @param count How many to read
+         * @param radix The radix
+         * @return The integers as an array of ints
+         */
+        public int[] nextInts(int count, int radix) {
+            int[] values = new int[checkCount(count)];
+            for (int i = 0; i < count; i++) {
+                values[i] = (int) nextIntegral(radix, Integer.MIN_VALUE, Integer.MAX_VALUE);
+            }
+            return values;
+        }
+
+        /**
+         * Prompts the user to input the given number of integers, separated by spaces or new lines. Automatically asks again for any which are not valid.
+         * @param prompt The prompt
+         * @param count How many to read
+         * @return The integers as an array of longs
+         */
+        public long[] nextLongs(String prompt, int count) {
+            prompt(prompt);
+            return nextLongs(count);
+        }
+
+        /**
+         * Returns the given number of integers inputted by the user, separated by spaces or new lines. Automatically asks again for any which are not valid.
+         * @param count How many to read
+         * @return The integers as an array of longs
+         */
+        public long[] nextLongs(int count) {
+            return nextLongs(count, 10);
+        }
+
+        /**
+         * Prompts the user to input the given number of integers, separated by spaces or new lines. Automatically asks again for any which are not valid.
+         * @param prompt The prompt
+         * @param count How many to read
+         * @param radix The radix
+         * @return The integers as an array of longs
+         */
+        public long[] nextLongs(String prompt, int count, int radix) {
+            prompt(prompt);
+            return nextLongs(count, radix);
+        }
+
+        /**
+         * Returns the given number of integers inputted by the user, separated by spaces or new lines. Automatically asks again for any which are not valid.
+         * @param count How many to read
+         * @param radix The radix
+         * @return The integers as an array of longs
+         */
+        public long[] nextLongs(int count, int radix) {
+            long[] values = new long[checkCount(count)];
+            for (int i = 0; i < count; i++) {
+                values[i] = nextIntegral(radix, Long.MIN_VALUE, Long.MAX_VALUE);
+            }
+            return values;
+        }
+
+        /**
+         * Prompts the user to input the given number of decimals, separated by spaces or new lines. Automatically asks again for any which are not valid.
+         * @param prompt The prompt
+         * @param count How many to read
+         * @return The decimals as an array of doubles
+         */
+        public double[] nextDoubles(String prompt, int count) {
+            prompt(prompt);
+            return nextDoubles(count);
+        }
+
+        /**
+         * Returns the given number of decimals inputted by the user, separated by spaces or new lines. Automatically asks again for any which are not valid.
+         * @param count How many to read
+         * @return The decimals as an array of doubles
+         */
+        public double[] nextDoubles(int count) {
+            double[] values = new double[checkCount(count)];
+            for (int i = 0; i < count; i++) {
+                values[i] = nextDouble();
+            }
+            return values;
+        }
+
+        /**
+         * Prompts the user to input integers, separated by spaces or new lines, until they enter a blank line. Automatically asks again for any line which is not valid.
+         * @param prompt The prompt
+         * @return The integers as an array of ints, which is empty if the first line is blank
+         */
+        public int[] nextIntBlock(String prompt) {
+            prompt(prompt);
+            return nextIntBlock();
+        }
+
+        /**
+         * Returns the integers inputted by the user, separated by spaces or new lines, up to the next blank line or the end of input. Automatically asks again for any line which is not valid.
+         * @return The integers as an array of ints, which is empty if the first line is blank
+         */
+        public int[] nextIntBlock() {
+            return nextIntBlock(10);
+        }
+
+        /**
+         * Prompts the user to input integers, separated by spaces or new lines, until they enter a blank line. Automatically asks again for any line which is not valid.
+         * @param prompt The prompt
+         * @param radix The radix
+         * @return The integers as an array of ints, which is empty if the first line is blank
+         */
+        public int[] nextIntBlock(String prompt, int radix) {
+            prompt(prompt);
+            return nextIntBlock(radix);
+        }
+
+        /**
+         * Returns the integers inputted by the user, separated by spaces or new lines, up to the next blank line or the end of input. Automatically asks again for any line which is not valid.
+         * @param radix The radix
+         * @return The integers as an array of ints, which is empty if the first line is blank
+         */
+        public int[] nextIntBlock(int radix) {
+            int[] values = new int[16];
+            int count = 0;
+            int lineStart = 0;
+            while (tokenizer.hasTokenBeforeBlankLine()) {
+                if (!tokenizer.lineHasToken()) {
+                    lineStart = count;
+                }
+                int status = tokenizer.scanLong(radix, Integer.MIN_VALUE, Integer.MAX_VALUE);
+                if (status != Tokenizer.OK) {
+                    // The whole line is entered again, so whatever was read from it is dropped
+                    count = lineStart;
+                    retry(ParseResult.status(status), "integer");
+                    continue;
+                }
+                tokenizer.consumeToken();
+                if (count == values.length) {
+                    values = Arrays.copyOf(values, count * 2);
+                }
+                values[count++] = (int) tokenizer.longValue();
+            }
+            endBlock();
+            return Arrays.copyOf(values, count);
+        }
+
+        /**
+         * Prompts the user to input integers, separated by spaces or new lines, until they enter a blank line. Automatically asks again for any line which is not valid.
+         * @param prompt The prompt
+         * @return The integers as an array of longs, which is empty if the first line is blank
+         */
+        public long[] nextLongBlock(String prompt) {
+            prompt(prompt);
+            return nextLongBlock();
+        }
+
+        /**
+         * Returns the integers inputted by the user, separated by spaces or new lines, up to the next blank line or the end of input. Automatically asks again for any line which is not valid.
+         * @return The integers as an array of longs, which is empty if the first line is blank
+         */
+        public long[] nextLongBlock() {
+            return nextLongBlock(10);
+        }
+
+        /**
+         * Prompts the user to input integers, separated by spaces or new lines, until they enter a blank line. Automatically asks again for any line which is not valid.
+         * @param prompt The prompt
+         * @param radix The radix
+         * @return The integers as an array of longs, which is empty if the first line is blank
+         */
+        public long[] nextLongBlock(String prompt, int radix) {
+            prompt(prompt);
+            return nextLongBlock(radix);
+        }
+
+        /**
+         * Returns the integers inputted by the user, separated by spaces or new lines, up to the next blank line or the end of input. Automatically asks again for any line which is not valid.
+         * @param radix The radix
+         * @return The integers as an array of longs, which is empty if the first line is blank
+         */
+        public long[] nextLongBlock(int radix) {
+            long[] values = new long[16];
+            int count = 0;
+            int lineStart = 0;
+            while (tokenizer.hasTokenBeforeBlankLine()) {
+                if (!tokenizer.lineHasToken()) {
+                    lineStart = count;
+                }
+                int status = tokenizer.scanLong(radix, Long.MIN_VALUE, Long.MAX_VALUE);
+                if (status != Tokenizer.OK) {
+                    // The whole line is entered again, so whatever was read from it is dropped
+                    count = lineStart;
+                    retry(ParseResult.status(status), "integer");
+                    continue;
+                }
+                tokenizer.consumeToken();
+                if (count == values.length) {
+                    values = Arrays.copyOf(values, count * 2);
+                }
+                values[count++] = tokenizer.longValue();
+            }
+            endBlock();
+            return Arrays.copyOf(values, count);
+        }
+
+        /**
+         * Prompts the user to input decimals, separated by spaces or new lines, until they enter a blank line. Automatically asks again for any line which is not valid.
+         * @param prompt The prompt
+         * @return The decimals as an array of doubles, which is empty if the first line is blank
+         */
+        public double[] nextDoubleBlock(String prompt) {
+            prompt(prompt);
+            return nextDoubleBlock();
+        }
+
+        /**
+         * Returns the decimals inputted by the user, separated by spaces or new lines, up to the next blank line or the end of input. Automatically asks again for any line which is not valid.
+         * @return The decimals as an array of doubles, which is empty if the first line is blank
+         */
+        public double[] nextDoubleBlock() {
+            double[] values = new double[16];
+            int count = 0;
+            int lineStart = 0;
+            while (tokenizer.hasTokenBeforeBlankLine()) {
+                if (!tokenizer.lineHasToken()) {
+                    lineStart = count;
+                }
+                int status = tokenizer.scanDouble();
+                if (status != Tokenizer.OK) {
+                    // The whole line is entered again, so whatever was read from it is dropped
+                    count = lineStart;
+                    retry(ParseResult.status(status), "decimal");
+                    continue;
+                }
+                tokenizer.consumeToken();
+                if (count == values.length) {
+                    values = Arrays.copyOf(values, count * 2);
+                }
+                values[count++] = tokenizer.doubleValue();
+            }
+            endBlock();
+            return Arrays.copyOf(values, count);
+        }
+
+        /**
+         * Returns a lazy stream of the integers inputted by the user, which ends at the end of input. Input is only read as the stream is consumed, so any amount of input can be processed in constant memory.
+         * Like {@link #nextInt}, the user is automatically asked again if they do not enter a valid integer.
+         * @return The integers as an IntStream
+         */
+        public IntStream ints() {
+            return StreamSupport.intStream(new IntSpliterator(false, 0), false);
+        }
+
+        /**
+         * Returns a lazy stream of the integers inputted by the user, which ends when the user enters the sentinel or the input ends. The sentinel is consumed but not included in the stream.
+         * Like {@link #nextInt}, the user is automatically asked again if they do not enter a valid integer.
+         * @param sentinel The value which ends the stream, such as -1
+         * @return The integers as an IntStream
+         */
+        public IntStream ints(int sentinel) {
+            return StreamSupport.intStream(new IntSpliterator(true, sentinel), false);
+        }
+
+        /**
+         * Returns a lazy stream of the integers inputted by the user, which ends at the end of input. Input is only read as the stream is consumed, so any amount of input can be processed in constant memory.
+         * Like {@link #nextLong}, the user is automatically asked again if they do not enter a valid integer.
+         * @return The integers as a LongStream
+         */
+        public LongStream longs() {
+            return StreamSupport.longStream(new LongSpliterator(false, 0), false);
+        }
+
+        /**
+         * Returns a lazy stream of the integers inputted by the user, which ends when the user enters the sentinel or the input ends. The sentinel is consumed but not included in the stream.
+         * Like {@link #nextLong}, the user is automatically asked again if they do not enter a valid integer.
+         * @param sentinel The value which ends the stream, such as -1
+         * @return The integers as a LongStream
+         */
+        public LongStream longs(long sentinel) {
+            return StreamSupport.longStream(new LongSpliterator(true, sentinel), false);
+        }
+
+        /**
+         * Returns a lazy stream of the decimals inputted by the user, which ends at the end of input. Input is only read as the stream is consumed, so any amount of input can be processed in constant memory.
+         * Like {@link #nextDouble}, the user is automatically asked again if they do not enter a valid decimal.
+         * @return The decimals as a DoubleStream
+         */
+        public DoubleStream doubles() {
+            return StreamSupport.doubleStream(new DoubleSpliterator(false, 0), false);
+        }
+
+        /**
+         * Returns a lazy stream of the decimals inputted by the user, which ends when the user enters the sentinel or the input ends. The sentinel is consumed but not included in the stream.
+         * Like {@link #nextDouble}, the user is automatically asked again if they do not enter a valid decimal.
+         * @param sentinel The value which ends the stream, such as 0
+         * @return The decimals as a DoubleStream
+         */
+        public DoubleStream doubles(double sentinel) {
+            return StreamSupport.doubleStream(new DoubleSpliterator(true, sentinel), false);
+        }
+
+        /**
+         * Returns a lazy stream of the words inputted by the user, which ends at the end of input.
+         * @return The words as a Stream
+         */
+        public Stream<String> tokens() {
+            return tokens(null);
+        }
+
+        /**
+         * Returns a lazy stream of the words inputted by the user, which ends when the user enters the sentinel or the input ends. The sentinel is consumed but not included in the stream.
+         * @param sentinel The word which ends the stream, such as "done"
+         * @return The words as a Stream
+         */
+        public Stream<String> tokens(String sentinel) {
+            return StreamSupport.stream(new Spliterators.AbstractSpliterator<String>(Long.MAX_VALUE, STREAM_CHARACTERISTICS) {
+                private boolean ended;
+
+                @Override
+                public boolean tryAdvance(Consumer<? super String> action) {
+                    shouldCallNextLineTwice = true;
+                    String token = ended ? null : tokenizer.token();
+                    if (token == null) {
+                        return false;
+                    }
+                    tokenizer.consumeToken();
+                    answered(SessionRecorder.TOKEN);
+                    if (token.equals(sentinel)) {
+                        ended = true;
+                        return false;
+                    }
+                    action.accept(token);
+                    return true;
+                }
+            }, false);
+        }
+
+        /**
+         * Returns a lazy stream of the lines inputted by the user, which ends at the end of input.
+         * Like {@link #nextLine}, the rest of the current line is skipped first if a word or number was just read from it.
+         * @return The lines as a Stream
+         */
+        public Stream<String> lines() {
+            return lines(null);
+        }
+
+        /**
+         * Returns a lazy stream of the lines inputted by the user, which ends when the user enters the sentinel or the input ends. The sentinel is consumed but not included in the stream.
+         * Like {@link #nextLine}, the rest of the current line is skipped first if a word or number was just read from it.
+         * @param sentinel The line which ends the stream, such as an empty line
+         * @return The lines as a Stream
+         */
+        public Stream<String> lines(String sentinel) {
+            return StreamSupport.stream(new Spliterators.AbstractSpliterator<String>(Long.MAX_VALUE, STREAM_CHARACTERISTICS) {
+                private boolean ended;
+
+                @Override
+                public boolean tryAdvance(Consumer<? super String> action) {
+                    String line = ended ? null : readLine();
+                    if (line == null || line.equals(sentinel)) {
+                        ended = true;
+                        return false;
+                    }
+                    action.accept(line);
+                    return true;
+                }
+            }, false);
+        }
+
+        private static int checkCount(int count) {
+            if (count < 0) {
+                throw new IllegalArgumentException("count must not be negative");
+            }
+            return count;
+        }
 
         /**
-         * Prompts the user to enter a word.
-         * <b>This is not the same as {@link #nextLine} which enters the next complete line entered.</b>
-         * @param prompt The prompt
-         * @return The next word
+         * Finishes reading a block, which ends after a blank line rather than partway through a line.
          */
-        public String next(String prompt) {
-            System.out.println(prompt);
-            return next();
+        private void endBlock() {
+            shouldCallNextLineTwice = false;
+            answered(SessionRecorder.TOKEN);
         }
 
         /**
-         * Returns the next word entered. 
-         * <b>This is not the same as {@link #nextLine} which enters the next complete line entered.</b>
-         * @return The next word
+         * Reads a boolean without asking again or throwing if the input is invalid. Any word starting with "T" or "Y" (regardless of case) is true, and vice versa for "F" and "N".
+         * @return The result, which is {@link ParseResult.Status#MISMATCH} if the next word is not a boolean. Invalid input is left to be read by another method.
          */
-        public String next() {
-            // Only used to fix nextLine() blank input bug, not input validation
-            return properNextType("string", stdScanner::next);
+        public ParseResult tryNextBoolean() {
+            if (!tokenizer.hasToken()) {
+                return result.set(Tokenizer.END_OF_INPUT, 0, 0);
+            }
+            switch (tokenizer.firstTokenChar()) {
+                case 't': case 'T': case 'y': case 'Y':
+                    return ok(1, 1);
+                case 'f': case 'F': case 'n': case 'N':
+                    return ok(0, 0);
+                default:
+                    return result.set(Tokenizer.MISMATCH, 0, 0);
+            }
         }
 
         /**
-         * Prompts the user to input an integer. Automatically asks again if the user does not enter a valid response.
-         * @param prompt The prompt
-         * @return The next integer as a BigInteger
+         * Reads a byte without asking again or throwing if the input is invalid.
+         * @return The result, which is {@link ParseResult.Status#OVERFLOW} if the next word is an integer which does not fit in a byte. Invalid input is left to be read by another method.
          */
-        public BigInteger nextBigInteger(String prompt) {
-            System.out.println(prompt);
-            return nextBigInteger();
+        public ParseResult tryNextByte() {
+            return tryNextIntegral(10, Byte.MIN_VALUE, Byte.MAX_VALUE);
         }
 
         /**
-         * Returns the next integer inputted by the user. Automatically asks again if the user does not enter a valid response.
-         * @return The next integer as a BigInteger
+         * Reads a byte without asking again or throwing if the input is invalid.
+         * @param radix The radix
+         * @return The result, which is {@link ParseResult.Status#OVERFLOW} if the next word is an integer which does not fit in a byte. Invalid input is left to be read by another method.
          */
-        public BigInteger nextBigInteger() {
-            return properNextType("integer", stdScanner::nextBigInteger);
+        public ParseResult tryNextByte(int radix) {
+            return tryNextIntegral(radix, Byte.MIN_VALUE, Byte.MAX_VALUE);
         }
 
         /**
-         * Prompts the user to input an integer. Automatically asks again if the user does not enter a valid response.
-         * @param prompt The prompt
-         * @param radix The radix
-         * @return The next integer as a BigInteger
+         * Reads a short without asking again or throwing if the input is invalid.
+         * @return The result, which is {@link ParseResult.Status#OVERFLOW} if the next word is an integer which does not fit in a short. Invalid input is left to be read by another method.
          */
-        public BigInteger nextBigInteger(String prompt, int radix) {
-            System.out.println(prompt);
-            return nextBigInteger(radix);
+        public ParseResult tryNextShort() {
+            return tryNextIntegral(10, Short.MIN_VALUE, Short.MAX_VALUE);
         }
 
         /**
-         * Returns the next integer inputted by the user. Automatically asks again if the user does not enter a valid response.
+         * Reads a short without asking again or throwing if the input is invalid.
          * @param radix The radix
-         * @return The next integer as a BigInteger
+         * @return The result, which is {@link ParseResult.Status#OVERFLOW} if the next word is an integer which does not fit in a short. Invalid input is left to be read by another method.
          */
-        public BigInteger nextBigInteger(int radix) {
-            return properNextType("integer", () -> stdScanner.nextBigInteger(radix));
+        public ParseResult tryNextShort(int radix) {
+            return tryNextIntegral(radix, Short.MIN_VALUE, Short.MAX_VALUE);
         }
 
         /**
-         * Prompts the user to input a decimal. Automatically asks again if the user does not enter a valid response.
-         * @param prompt The prompt
-         * @return The next integer as a BigDecimal
+         * Reads an int without asking again or throwing if the input is invalid. For example:
+         * <pre>
+         *   ParseResult result = scanner.tryNextInt();
+         *   if (result.isOk()) {
+         *       total += result.intValue();
+         *   }
+         * </pre>
+         * @return The result, which is {@link ParseResult.Status#OVERFLOW} if the next word is an integer which does not fit in an int. Invalid input is left to be read by another method.
          */
-        public BigDecimal nextBigDecimal(String prompt) {
-            System.out.println(prompt);
-            return nextBigDecimal();
+        public ParseResult tryNextInt() {
+            return tryNextIntegral(10, Integer.MIN_VALUE, Integer.MAX_VALUE);
         }
 
         /**
-         * Returns the next decimal inputted by the user. Automatically asks again if the user does not enter a valid response.
-         * @return The next decimal as a BigDecimal
+         * Reads an int without asking again or throwing if the input is invalid.
+         * @param radix The radix
+         * @return The result, which is {@link ParseResult.Status#OVERFLOW} if the next word is an integer which does not fit in an int. Invalid input is left to be read by another method.
          */
-        public BigDecimal nextBigDecimal() {
-            return properNextType("decimal", stdScanner::nextBigDecimal);
+        public ParseResult tryNextInt(int radix) {
+            return tryNextIntegral(radix, Integer.MIN_VALUE, Integer.MAX_VALUE);
         }
 
         /**
-         * Prompts the user to input a boolean, Any word starting with "T" or "Y" (regardless of case) will be interpreted as true, and vice versa for "F" and "N". Automatically asks again if the user does not enter a valid response.
-         * @param prompt The prompt
-         * @return The next true/false or yes/no as a boolean
+         * Reads a long without asking again or throwing if the input is invalid.
+         * @return The result, which is {@link ParseResult.Status#OVERFLOW} if the next word is an integer which does not fit in a long. Invalid input is left to be read by another method.
          */
-        public boolean nextBoolean(String prompt) {
-            System.out.println(prompt);
-            return nextBoolean();
+        public ParseResult tryNextLong() {
+            return tryNextIntegral(10, Long.MIN_VALUE, Long.MAX_VALUE);
         }
 
         /**
-         * Returns the next boolean inputted by the user. Any word starting with "T" or "Y" (regardless of case) will be interpreted as true, and vice versa for "F" and "N". Automatically asks again if the user does not enter a valid response.
-         * @return The next integer as a BigInteger
+         * Reads a long without asking again or throwing if the input is invalid.
+         * @param radix The radix
+         * @return The result, which is {@link ParseResult.Status#OVERFLOW} if the next word is an integer which does not fit in a long. Invalid input is left to be read by another method.
          */
-        public boolean nextBoolean() {
-            String rawBoolean = properNextType("boolean", () -> stdScanner.next(booleanPattern)).toLowerCase();
-            return rawBoolean.startsWith("t") || rawBoolean.startsWith("y");
+        public ParseResult tryNextLong(int radix) {
+            return tryNextIntegral(radix, Long.MIN_VALUE, Long.MAX_VALUE);
         }
 
         /**
-         * Prompts the user to input a byte. Automatically asks again if the user does not enter a valid response.
-         * @param prompt The prompt
-         * @return The next integer as a byte
+         * Reads a decimal as a float without asking again or throwing if the input is invalid.
+         * @return The result, which is {@link ParseResult.Status#MISMATCH} if the next word is not a decimal. Invalid input is left to be read by another method.
          */
-        public byte nextByte(String prompt) {
-            System.out.println(prompt);
-            return nextByte();
+        public ParseResult tryNextFloat() {
+            int status = tokenizer.scanFloat();
+            return status == Tokenizer.OK ? ok(0, tokenizer.floatValue()) : result.set(status, 0, 0);
         }
 
         /**
-         * Returns the next integer inputted by the user. Automatically asks again if the user does not enter a valid response.
-         * @return The next integer as a byte
+         * Reads a decimal without asking again or throwing if the input is invalid.
+         * @return The result, which is {@link ParseResult.Status#MISMATCH} if the next word is not a decimal. Invalid input is left to be read by another method.
          */
-        public byte nextByte() {
-            return properNextType("integer", stdScanner::nextByte);
+        public ParseResult tryNextDouble() {
+            int status = tokenizer.scanDouble();
+            return status == Tokenizer.OK ? ok(0, tokenizer.doubleValue()) : result.set(status, 0, 0);
         }
 
-        /**
-         * Prompts the user to input a byte. Automatically asks again if the user does not enter a valid response.
-         * @param prompt The prompt
-         * @param radix The radix
-         * @return The next integer as a byte
-         */
-        public byte nextByte(String prompt, int radix) {
-            System.out.println(prompt);
-            return nextByte(radix);
+        private ParseResult tryNextIntegral(int radix, long min, long max) {
+            int status = tokenizer.scanLong(radix, min, max);
+            return status == Tokenizer.OK ? ok(tokenizer.longValue(), tokenizer.longValue()) : result.set(status, 0, 0);
+        }
+
+        private ParseResult ok(long longValue, double doubleValue) {
+            // Only set once a token is consumed, so that a rejected line can still be read by nextLine()
+            shouldCallNextLineTwice = true;
+            tokenizer.consumeToken();
+            answered(SessionRecorder.TOKEN);
+            return result.set(Tokenizer.OK, longValue, doubleValue);
+        }
+
+        private long nextIntegral(int radix, long min, long max) {
+            while (true) {
+                ParseResult result = tryNextIntegral(radix, min, max);
+                if (result.isOk()) {
+                    return result.longValue();
+                }
+                retry(result.getStatus(), "integer");
+            }
         }
 
         /**
-         * Returns the next integer inputted by the user. Automatically asks again if the user does not enter a valid response.
-         * @param radix The radix
-         * @return The next integer as a byte
+         * Reads a menu selection, either a number between 1 and the number of options or the name of an option, asking again or failing the script if there is no such option.
+         * @return The option, or null if a deadline was set and it passed first
          */
-        public byte nextByte(int radix) {
-            return properNextType("integer", () -> stdScanner.nextByte(radix));
+        Option nextSelection(MenuLooper menu, List<Option> footer, Pager pager) {
+            List<Option> options = menu.options;
+            while (true) {
+                shouldCallNextLineTwice = true;
+                int status = tokenizer.scanLong(10, 1, options.size() + footer.size());
+                if (status == Tokenizer.OK) {
+                    tokenizer.consumeToken();
+                    answered(SessionRecorder.SELECTION);
+                    int index = (int) tokenizer.longValue() - 1;
+                    return index < options.size() ? options.get(index) : footer.get(index - options.size());
+                }
+                ParseResult result = this.result.set(status, 0, 0);
+                if (result.getStatus() == ParseResult.Status.MISMATCH) {
+                    Option selected = nextSelectionByName(menu, footer, pager);
+                    if (selected != null || tokenizer.timedOut()) {
+                        return selected;
+                    }
+                } else if (result.getStatus() == ParseResult.Status.END_OF_INPUT && tokenizer.timedOut()) {
+                    return null;
+                } else if (result.getStatus() != ParseResult.Status.OVERFLOW) {
+                    retry(result.getStatus(), "integer");
+                } else if (interactive) {
+                    if (metrics != null) {
+                        metrics.recordRetry("option");
+                    }
+                    tokenizer.consumeToken();
+                    out.println("Could not recognise that option. Please enter an option from the list above");
+                } else {
+                    throw tokenizer.error("Selected an option which is not on the menu");
+                }
+            }
         }
 
         /**
-         * Prompts the user to input a decimal. Automatically asks again if the user does not enter a valid response.
-         * @param prompt The prompt
-         * @return The next decimal as a double
+         * Reads the rest of the line as the name of an option, or as a page to move to if the menu is paginated.
+         * @return The option, or null if the name is ambiguous or unknown and the user has been asked again
          */
-        public double nextDouble(String prompt) {
-            System.out.println(prompt);
-            return nextDouble();
+        private Option nextSelectionByName(MenuLooper menu, List<Option> footer, Pager pager) {
+            long line = interactive ? 0 : tokenizer.line();
+            int column = interactive ? 0 : tokenizer.column();
+            // Names may contain spaces, so the whole line is the name
+            String name = tokenizer.readLine();
+            if (name == null) {
+                // Only possible if the time ran out before the end of the line
+                return null;
+            }
+            name = name.trim();
+            shouldCallNextLineTwice = false;
+            if (pager != null && pager.turn(name, menu.pageCount())) {
+                answered(SessionRecorder.SELECTION);
+                return pageOption;
+            }
+            List<Option> matches = menu.findOptions(name, footer);
+            if (matches.size() == 1) {
+                answered(SessionRecorder.SELECTION);
+                return matches.get(0);
+            }
+
+            StringBuilder problem = new StringBuilder();
+            if (matches.isEmpty()) {
+                problem.append(interactive ? "Could not recognise that option" : "Selected an option which is not on the menu");
+            } else {
+                problem.append('"').append(name).append("\" could be any of ");
+                for (int i = 0; i < matches.size(); i++) {
+                    problem.append(i == 0 ? "" : ", ").append(matches.get(i));
+                }
+            }
+            if (!interactive) {
+                throw new ScriptInputException(problem.toString(), line, column);
+            }
+            if (metrics != null) {
+                metrics.recordRetry("option");
+            }
+            out.println(problem.append(matches.isEmpty() ? ". Please enter an option from the list above" : ". Please enter more of its name"));
+            return null;
+        }
+
+        private void prompt(String prompt) {
+            if (interactive && !(typeahead && tokenizer.hasBufferedToken())) {
+                out.println(prompt);
+                if (flushPrompts) {
+                    // Otherwise a buffered answer is read without flushing, and the option's own output would come first
+                    out.flush();
+                }
+            }
+            awaitAnswer(prompt);
         }
 
         /**
-         * Returns the next decimal inputted by the user. Automatically asks again if the user does not enter a valid response.
-         * @return The next decimal as a double
+         * Starts timing how long the user takes to answer the given prompt, if metrics are being collected.
          */
-        public double nextDouble() {
-            return properNextType("decimal", stdScanner::nextDouble);
+        void awaitAnswer(String prompt) {
+            if (metrics != null) {
+                pendingPrompt = prompt;
+                promptStart = System.nanoTime();
+            }
         }
 
         /**
-         * Prompts the user to input a decimal. Automatically asks again if the user does not enter a valid response.
-         * @param prompt The prompt
-         * @return The next decimal as a float
+         * Called after input was read successfully.
+         * @param kind The {@link SessionRecorder} kind of the input, which is recorded along with everything consumed since the last answer
          */
-        public float nextFloat(String prompt) {
-            System.out.println(prompt);
-            return nextFloat();
+        private void answered(byte kind) {
+            if (pendingPrompt != null && metrics != null) {
+                metrics.recordPrompt(pendingPrompt, System.nanoTime() - promptStart);
+                pendingPrompt = null;
+            }
+            if (recording != null) {
+                recording.record(kind, tokenizer.takeRecorded());
+            }
+        }
+
+        private void retry(ParseResult.Status status, String typeName) {
+            if (!interactive) {
+                String expected = (typeName.equals("integer") ? "an " : "a ") + typeName;
+                throw tokenizer.error(status == ParseResult.Status.END_OF_INPUT
+                        ? String.format("Expected %s but the script ended", expected)
+                        : String.format("Expected %s but found \"%s\"", expected, tokenizer.token()));
+            }
+            if (status == ParseResult.Status.END_OF_INPUT) {
+                throw new EndOfInputException("The input ended");
+            }
+            if (metrics != null) {
+                metrics.recordRetry(typeName);
+            }
+            if (err != out) {
+                out.flush();
+            }
+            err.printf("Please enter a valid %s and try again%n", typeName);
+            err.flush();
+            tokenizer.skipLine();
         }
 
         /**
-         * Returns the next decimal inputted by the user. Automatically asks again if the user does not enter a valid response.
-         * @return The next decimal as a float
+         * Streams the integers read by {@link #ints}. Reading stops for good at the sentinel, so values after it are left for other methods.
          */
-        public float nextFloat() {
-            return properNextType("decimal", stdScanner::nextFloat);
+        private final class IntSpliterator extends Spliterators.AbstractIntSpliterator {
+            private final boolean hasSentinel;
+            private final int sentinel;
+            private boolean ended;
+
+            IntSpliterator(boolean hasSentinel, int sentinel) {
+                super(Long.MAX_VALUE, STREAM_CHARACTERISTICS);
+                this.hasSentinel = hasSentinel;
+                this.sentinel = sentinel;
+            }
+
+            @Override
+            public boolean tryAdvance(IntConsumer action) {
+                while (!ended) {
+                    ParseResult result = tryNextInt();
+                    if (result.isOk()) {
+                        ended = hasSentinel && result.intValue() == sentinel;
+                        if (!ended) {
+                            action.accept(result.intValue());
+                            return true;
+                        }
+                    } else if (result.getStatus() == ParseResult.Status.END_OF_INPUT) {
+                        ended = true;
+                    } else {
+                        retry(result.getStatus(), "integer");
+                    }
+                }
+                return false;
+            }
         }
 
         /**
-         * Prompts the user to input an integer. Automatically asks again if the user does not enter a valid response.
-         * @param prompt The prompt
-         * @return The next integer as an int
+         * Streams the integers read by {@link #longs}.
          */
-        public int nextInt(String prompt) {
-            System.out.println(prompt);
-            return nextInt();
+        private final class LongSpliterator extends Spliterators.AbstractLongSpliterator {
+            private final boolean hasSentinel;
+            private final long sentinel;
+            private boolean ended;
+
+            LongSpliterator(boolean hasSentinel, long sentinel) {
+                super(Long.MAX_VALUE, STREAM_CHARACTERISTICS);
+                this.hasSentinel = hasSentinel;
+                this.sentinel = sentinel;
+            }
+
+            @Override
+            public boolean tryAdvance(LongConsumer action) {
+                while (!ended) {
+                    ParseResult result = tryNextLong();
+                    if (result.isOk()) {
+                        ended = hasSentinel && result.longValue() == sentinel;
+                        if (!ended) {
+                            action.accept(result.longValue());
+                            return true;
+                        }
+                    } else if (result.getStatus() == ParseResult.Status.END_OF_INPUT) {
+                        ended = true;
+                    } else {
+                        retry(result.getStatus(), "integer");
+                    }
+                }
+                return false;
+            }
         }
 
         /**
-         * Returns the next integer inputted by the user. Automatically asks again if the user does not enter a valid response.
-         * @return The next integer as an int
+         * Streams the decimals read by {@link #doubles}.
          */
-        public int nextInt() {
-            return properNextType("integer", stdScanner::nextInt);
+        private final class DoubleSpliterator extends Spliterators.AbstractDoubleSpliterator {
+            private final boolean hasSentinel;
+            private final double sentinel;
+            private boolean ended;
+
+            DoubleSpliterator(boolean hasSentinel, double sentinel) {
+                super(Long.MAX_VALUE, STREAM_CHARACTERISTICS);
+                this.hasSentinel = hasSentinel;
+                this.sentinel = sentinel;
+            }
+
+            @Override
+            public boolean tryAdvance(DoubleConsumer action) {
+                while (!ended) {
+                    ParseResult result = tryNextDouble();
+                    if (result.isOk()) {
+                        ended = hasSentinel && result.doubleValue() == sentinel;
+                        if (!ended) {
+                            action.accept(result.doubleValue());
+                            return true;
+                        }
+                    } else if (result.getStatus() == ParseResult.Status.END_OF_INPUT) {
+                        ended = true;
+                    } else {
+                        retry(result.getStatus(), "decimal");
+                    }
+                }
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Thrown by a {@link Scanner} when the input ends, so that {@link #run} can tell it apart from an option failing for unrelated reasons.
+     */
+    private static final class EndOfInputException extends NoSuchElementException {
+        private static final long serialVersionUID = 1L;
+
+        EndOfInputException(String message) {
+            super(message);
         }
+    }
+
+    /**
+     * A buffered output sink used by {@link MenuLooper} and {@link Scanner} in place of {@link java.io.PrintStream}.
+     *
+     * Text is encoded into a single reusable direct {@link ByteBuffer} which is only written to the underlying channel when it fills up or {@link #flush} is called.
+     * Unlike {@link System#out}, an Output is not synchronized and does not flush on every line, so it should only be used by one thread at a time.
+     */
+    public static class Output implements Flushable, Closeable {
+        private static final int BUFFER_SIZE = 8192;
+        private static final String LINE_SEPARATOR = System.lineSeparator();
+
+        private final WritableByteChannel channel;
+        private final Flushable flushable;
+        private final Charset charset;
+        private final CharsetEncoder encoder;
+        /** Allocated on the first write, since outputs such as the one for {@link System#err} are often never written to */
+        private ByteBuffer buffer;
+        private SessionRecorder.Session recording;
 
         /**
-         * Prompts the user to input an integer. Automatically asks again if the user does not enter a valid response.
-         * @param prompt The prompt
-         * @param radix The radix
-         * @return The next integer as an int
+         * Creates an Output which writes to the given channel using the default charset.
+         * @param channel The channel to write to
          */
-        public int nextInt(String prompt, int radix) {
-            System.out.println(prompt);
-            return nextInt(radix);
+        public Output(WritableByteChannel channel) {
+            this(channel, Charset.defaultCharset());
         }
 
         /**
-         * Returns the next integer inputted by the user. Automatically asks again if the user does not enter a valid response.
-         * @param radix The radix
-         * @return The next integer as an int
+         * Creates an Output which writes to the given channel.
+         * @param channel The channel to write to
+         * @param charset The charset text is encoded with
          */
-        public int nextInt(int radix) {
-            return properNextType("integer", () -> stdScanner.nextInt(radix));
+        public Output(WritableByteChannel channel, Charset charset) {
+            this(channel, channel instanceof Flushable ? (Flushable) channel : null, charset);
+        }
+
+        private Output(WritableByteChannel channel, Flushable flushable, Charset charset) {
+            this.channel = channel;
+            this.flushable = flushable;
+            this.charset = charset;
+            this.encoder = charset.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
         }
 
         /**
-         * Prompts the user to enter a String on the console
-         * @param prompt The prompt
-         * @return The next line entered
+         * Creates an Output which writes to the given stream using the default charset.
+         * @param out The stream to write to
          */
-        public String nextLine(String prompt) {
-            System.out.println(prompt);
-            return nextLine();
+        public Output(OutputStream out) {
+            this(out, Charset.defaultCharset());
         }
 
         /**
-         * Returns the next line entered by the user
-         * @return The next integer as a BigInteger
+         * Creates an Output which writes to the given stream.
+         * @param out The stream to write to
+         * @param charset The charset text is encoded with
          */
-        public String nextLine() {
-            if (shouldCallNextLineTwice) {
-              stdScanner.nextLine();
-              shouldCallNextLineTwice = false;
-            }
-          
-            return stdScanner.nextLine();
+        public Output(OutputStream out, Charset charset) {
+            this(Channels.newChannel(out), out, charset);
         }
 
         /**
-         * Prompts the user to input an integer. Automatically asks again if the user does not enter a valid response.
-         * @param prompt The prompt
-         * @return The next integer as a long
+         * @return The charset text is encoded with
          */
-        public long nextLong(String prompt) {
-            System.out.println(prompt);
-            return nextLong();
+        public Charset charset() {
+            return charset;
         }
 
         /**
-         * Returns the next integer inputted by the user. Automatically asks again if the user does not enter a valid response.
-         * @return The next integer as a long
+         * Writes text without a line separator.
+         * @param text The text
          */
-        public long nextLong() {
-            return properNextType("integer", stdScanner::nextLong);
+        public void print(CharSequence text) {
+            CharBuffer chars = CharBuffer.wrap(text);
+            ByteBuffer buffer = buffer();
+            while (true) {
+                CoderResult result = encoder.encode(chars, buffer, true);
+                if (result.isOverflow()) {
+                    drain();
+                } else {
+                    break;
+                }
+            }
+            while (encoder.flush(buffer).isOverflow()) {
+                drain();
+            }
+            encoder.reset();
         }
 
         /**
-         * Prompts the user to input an integer. Automatically asks again if the user does not enter a valid response.
-         * @param prompt The prompt
-         * @param radix The radix
-         * @return The next integer as a long
+         * Writes text followed by a line separator.
+         * @param text The text
          */
-        public long nextLong(String prompt, int radix) {
-            System.out.println(prompt);
-            return nextLong(radix);
+        public void println(CharSequence text) {
+            print(text);
+            println();
         }
 
         /**
-         * Returns the next integer inputted by the user. Automatically asks again if the user does not enter a valid response.
-         * @param radix The radix
-         * @return The next integer as a long
+         * Writes a line separator.
          */
-        public long nextLong(int radix) {
-            return properNextType("integer", () -> stdScanner.nextLong(radix));
+        public void println() {
+            print(LINE_SEPARATOR);
         }
 
         /**
-         * Prompts the user to input an integer. Automatically asks again if the user does not enter a valid response.
-         * @param prompt The prompt
-         * @return The next integer as a BigInteger
+         * Writes a formatted string, as in {@link String#format}.
+         * @param format The format string
+         * @param args The arguments referenced by the format string
          */
-        public short nextShort(String prompt) {
-            System.out.println(prompt);
-            return nextShort();
+        public void printf(String format, Object... args) {
+            print(String.format(format, args));
         }
 
         /**
-         * Returns the next integer inputted by the user. Automatically asks again if the user does not enter a valid response.
-         * @return The next integer as a short
+         * Writes bytes which are already encoded in this output's charset.
+         * @param bytes The bytes
          */
-        public short nextShort() {
-            return properNextType("integer", stdScanner::nextShort);
+        public void write(byte[] bytes) {
+            ByteBuffer buffer = buffer();
+            int offset = 0;
+            while (offset < bytes.length) {
+                if (!buffer.hasRemaining()) {
+                    drain();
+                }
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
         }
 
         /**
-         * Prompts the user to input an integer. Automatically asks again if the user does not enter a valid response.
-         * @param prompt The prompt
-         * @param radix The radix
-         * @return The next integer as a BigInteger
+         * Writes everything buffered so far to the underlying channel.
          */
-        public short nextShort(String prompt, int radix) {
-            System.out.println(prompt);
-            return nextShort(radix);
+        @Override
+        public void flush() {
+            drain();
+            if (flushable != null) {
+                try {
+                    flushable.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
         }
 
         /**
-         * Returns the next integer inputted by the user. Automatically asks again if the user does not enter a valid response.
-         * @param radix The radix
-         * @return The next integer as a short
+         * Flushes and closes the underlying channel.
          */
-        public short nextShort(int radix) {
-            return properNextType("integer", () -> stdScanner.nextShort(radix));
+        @Override
+        public void close() {
+            drain();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
         }
 
-        private <T> T properNextType(String typeName, Supplier<T> nextFunction) {
-            shouldCallNextLineTwice = true;
-            T input;
-            while (true) {
-                try {
-                    input = nextFunction.get();
-                    break;
-                } catch (InputMismatchException e) {
-                    System.err.printf("Please enter a valid %s and try again%n", typeName);
-                    stdScanner.nextLine();
+        private ByteBuffer buffer() {
+            if (buffer == null) {
+                buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            }
+            return buffer;
+        }
+
+        private void drain() {
+            if (buffer == null) {
+                return;
+            }
+            buffer.flip();
+            if (recording != null && buffer.hasRemaining()) {
+                recording.recordOutput(buffer);
+            }
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
                 }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                buffer.clear();
             }
+        }
+    }
+
+    /**
+     * The page of a paginated menu which is being displayed.
+     */
+    private static final class Pager {
+        private int page;
 
-            return input;
+        /**
+         * Moves to another page if the input is {@code >}, {@code <} or {@code #n}. Moving past the first or last page stays on it.
+         * @return Whether the input was a page to move to
+         */
+        boolean turn(String input, int pages) {
+            if (input.equals(">")) {
+                page = Math.min(page + 1, pages - 1);
+                return true;
+            }
+            if (input.equals("<")) {
+                page = Math.max(page - 1, 0);
+                return true;
+            }
+            if (input.length() < 2 || input.length() > 10 || input.charAt(0) != '#') {
+                return false;
+            }
+            long target = 0;
+            for (int i = 1; i < input.length(); i++) {
+                char c = input.charAt(i);
+                if (c < '0' || c > '9') {
+                    return false;
+                }
+                target = target * 10 + (c - '0');
+            }
+            page = (int) Math.max(0, Math.min(target, pages) - 1);
+            return true;
         }
     }
 
     private static class Option {
         private String name;
+        private final List<String> aliases = new ArrayList<>(0);
         private Runnable runnable;
         private Consumer<Scanner> consumer;
+        private Supplier<MenuLooper> submenuSupplier;
+        private volatile MenuLooper submenu;
+        private String cacheTag;
+        private Consumer<Output> report;
+        private String[] invalidatedTags;
 
         Option(String name, Runnable runnable) {
             this.name = name;
@@ -459,12 +2423,41 @@ public class MenuLooper implements Runnable {
             this.consumer = consumer;
         }
 
-        void callOption(Scanner scanner) {
+        Option(String name, Supplier<MenuLooper> submenuSupplier) {
+            this.name = name;
+            this.submenuSupplier = submenuSupplier;
+        }
+
+        /**
+         * @return Whether the user chose to exit to the root menu from inside this option's submenu
+         */
+        boolean callOption(Scanner scanner) {
             if (runnable != null) {
                 runnable.run();
             } else if (consumer != null) {
                 consumer.accept(scanner);
+            } else if (submenuSupplier != null) {
+                return getSubmenu().loop(scanner, false);
+            }
+            return false;
+        }
+
+        private MenuLooper getSubmenu() {
+            MenuLooper built = submenu;
+            if (built == null) {
+                synchronized (this) {
+                    built = submenu;
+                    if (built == null) {
+                        built = submenuSupplier.get();
+                        submenu = built;
+                    }
+                }
             }
+            return built;
+        }
+
+        void evictSubmenu() {
+            submenu = null;
         }
 
         @Override
@@ -0,0 +1,135 @@
+package io.github.yashar256.looper;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Measurements collected by a {@link MenuLooper} after {@link MenuLooper#enableMetrics} is called:
+ * how often each option is selected and how long it takes, how long users spend at each prompt, and how often they enter invalid input.
+ *
+ * Recording a measurement only updates preallocated counters, apart from the first time a new option or prompt is seen.
+ * Prompts are tracked by their text, so at most 256 distinct prompts are tracked separately and the rest are counted as "(other)".
+ */
+public class MenuMetrics implements MenuMetricsMXBean {
+    static final String MENU_PROMPT = "(menu)";
+    private static final String OTHER_PROMPT = "(other)";
+    private static final int MAX_PROMPTS = 256;
+
+    private final ConcurrentMap<String, LatencyHistogram> options = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LatencyHistogram> prompts = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicLong> retries = new ConcurrentHashMap<>();
+
+    void recordOption(String name, long nanos) {
+        histogram(options, name).record(nanos);
+    }
+
+    void recordPrompt(String prompt, long nanos) {
+        if (!prompts.containsKey(prompt) && prompts.size() >= MAX_PROMPTS) {
+            prompt = OTHER_PROMPT;
+        }
+        histogram(prompts, prompt).record(nanos);
+    }
+
+    void recordRetry(String typeName) {
+        AtomicLong count = retries.get(typeName);
+        if (count == null) {
+            count = retries.computeIfAbsent(typeName, key -> new AtomicLong());
+        }
+        count.incrementAndGet();
+    }
+
+    private static LatencyHistogram histogram(ConcurrentMap<String, LatencyHistogram> histograms, String key) {
+        LatencyHistogram histogram = histograms.get(key);
+        return histogram != null ? histogram : histograms.computeIfAbsent(key, name -> new LatencyHistogram());
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server, under {@code io.github.yashar256.looper:type=MenuMetrics,name=<name>}.
+     * @param name The name to register the metrics under, which must be unique within the JVM
+     * @throws JMException If the metrics cannot be registered, for example because the name is already taken
+     */
+    public void registerMBean(String name) throws JMException {
+        ObjectName objectName = new ObjectName("io.github.yashar256.looper", "type", "MenuMetrics");
+        objectName = ObjectName.getInstance(objectName + ",name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+    }
+
+    @Override
+    public Map<String, Long> getOptionInvocations() {
+        return snapshot(options, LatencyHistogram::count);
+    }
+
+    @Override
+    public Map<String, Long> getOptionLatencyP50() {
+        return snapshot(options, histogram -> histogram.percentile(50));
+    }
+
+    @Override
+    public Map<String, Long> getOptionLatencyP99() {
+        return snapshot(options, histogram -> histogram.percentile(99));
+    }
+
+    @Override
+    public Map<String, Long> getOptionLatencyMax() {
+        return snapshot(options, LatencyHistogram::max);
+    }
+
+    @Override
+    public Map<String, Long> getPromptWaitP50() {
+        return snapshot(prompts, histogram -> histogram.percentile(50));
+    }
+
+    @Override
+    public Map<String, Long> getPromptWaitP99() {
+        return snapshot(prompts, histogram -> histogram.percentile(99));
+    }
+
+    @Override
+    public Map<String, Long> getPromptWaitMax() {
+        return snapshot(prompts, LatencyHistogram::max);
+    }
+
+    @Override
+    public Map<String, Long> getRetries() {
+        return snapshot(retries, AtomicLong::get);
+    }
+
+    private static <T> Map<String, Long> snapshot(Map<String, T> source, ToLongFunction<T> value) {
+        Map<String, Long> snapshot = new TreeMap<>();
+        source.forEach((key, item) -> snapshot.put(key, value.applyAsLong(item)));
+        return snapshot;
+    }
+
+    @Override
+    public String getSummary() {
+        String lineSeparator = System.lineSeparator();
+        StringBuilder summary = new StringBuilder("Option latency (count, p50, p99, max)");
+        appendHistograms(summary, options);
+        summary.append(lineSeparator).append("Time at prompt (count, p50, p99, max)");
+        appendHistograms(summary, prompts);
+        summary.append(lineSeparator).append("Invalid input retries");
+        getRetries().forEach((type, count) -> summary.append(lineSeparator).append(String.format("  %s: %d", type, count)));
+        return summary.toString();
+    }
+
+    private static void appendHistograms(StringBuilder summary, Map<String, LatencyHistogram> histograms) {
+        new TreeMap<>(histograms).forEach((name, histogram) -> summary.append(String.format("%n  %s: %d, %s, %s, %s",
+                name, histogram.count(), duration(histogram.percentile(50)), duration(histogram.percentile(99)), duration(histogram.max()))));
+    }
+
+    private static String duration(long nanos) {
+        if (nanos >= 1_000_000_000L) {
+            return String.format("%.2fs", nanos / 1e9);
+        } else if (nanos >= 1_000_000) {
+            return String.format("%.2fms", nanos / 1e6);
+        }
+        return String.format("%.2fus", nanos / 1e3);
+    }
+}
@@ -0,0 +1,39 @@
+package io.github.yashar256.looper;
+
+import java.util.Map;
+
+/**
+ * The JMX view of a {@link MenuMetrics}, registered with {@link MenuMetrics#registerMBean}.
+ * Latencies are in nanoseconds.
+ */
+public interface MenuMetricsMXBean {
+    /**
+     * @return How many times each option was selected, by option name
+     */
+    Map<String, Long> getOptionInvocations();
+
+    Map<String, Long> getOptionLatencyP50();
+
+    Map<String, Long> getOptionLatencyP99();
+
+    Map<String, Long> getOptionLatencyMax();
+
+    /**
+     * @return The median time users spent answering each prompt, by prompt text. The menu itself is reported as "(menu)".
+     */
+    Map<String, Long> getPromptWaitP50();
+
+    Map<String, Long> getPromptWaitP99();
+
+    Map<String, Long> getPromptWaitMax();
+
+    /**
+     * @return How many times users had to be asked again after invalid input, by expected type such as "integer"
+     */
+    Map<String, Long> getRetries();
+
+    /**
+     * @return A human readable summary of every metric
+     */
+    String getSummary();
+}
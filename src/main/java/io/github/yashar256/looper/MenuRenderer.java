@@ -0,0 +1,159 @@
+package io.github.yashar256.looper;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Caches the encoded bytes of a menu so that redrawing it is a single write.
+ *
+ * Every entry is encoded separately and kept until it changes. Adding or removing an option only re-encodes the entries whose number changed,
+ * and the whole menu is only reassembled from the cached entries when something changed since the last redraw.
+ * A paginated menu only encodes the entries on the page being displayed, so drawing a page costs the same however many options there are.
+ */
+final class MenuRenderer {
+    static final String HEADER = "Select an option from the list bellow";
+    static final String NAVIGATION = "Page %d of %d, enter > for the next page, < for the previous page or #n to go to page n";
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final List<byte[]> lines = new ArrayList<>();
+    private Charset charset;
+    private List<?> footer;
+    private byte[] header;
+    private byte[] menu;
+
+    /**
+     * Called after an option was inserted at the given index. Every entry after it is renumbered.
+     */
+    synchronized void inserted(int index) {
+        lines.add(Math.min(index, lines.size()), null);
+        invalidateFrom(index);
+    }
+
+    /**
+     * Called after the option at the given index was removed. Every entry after it is renumbered.
+     */
+    synchronized void removed(int index) {
+        if (index < lines.size()) {
+            lines.remove(index);
+        }
+        invalidateFrom(index);
+    }
+
+    private void invalidateFrom(int index) {
+        for (int i = index; i < lines.size(); i++) {
+            lines.set(i, null);
+        }
+        menu = null;
+    }
+
+    /**
+     * @param options The options of the menu, numbered from 1
+     * @param footer The entries displayed after the options, such as the quit option
+     * @param charset The charset of the output the menu is written to
+     * @return The entire encoded menu, followed by a line separator
+     */
+    synchronized byte[] render(List<?> options, List<?> footer, Charset charset) {
+        prepare(options.size(), footer, charset);
+        int entries = options.size() + footer.size();
+        if (menu != null && lines.size() == entries) {
+            return menu;
+        }
+        resize(entries);
+
+        int length = header.length;
+        for (int i = 0; i < entries; i++) {
+            length += line(options, footer, i).length;
+        }
+
+        byte[] assembled = new byte[length];
+        System.arraycopy(header, 0, assembled, 0, header.length);
+        int offset = header.length;
+        for (int i = 0; i < entries; i++) {
+            offset = append(assembled, offset, lines.get(i));
+        }
+        menu = assembled;
+        return menu;
+    }
+
+    /**
+     * Renders a single page of the menu: the options on that page, every footer entry, and a line explaining how to change page.
+     * Entries keep the numbers they have in the whole menu, so any option can still be selected from any page.
+     * @param options The options of the menu, numbered from 1
+     * @param footer The entries displayed after the options, such as the quit option
+     * @param charset The charset of the output the menu is written to
+     * @param page The page to render, counting from 0
+     * @param pageSize The number of options on each page
+     * @return The encoded page, followed by a line separator
+     */
+    synchronized byte[] renderPage(List<?> options, List<?> footer, Charset charset, int page, int pageSize) {
+        prepare(options.size(), footer, charset);
+        int entries = options.size() + footer.size();
+        if (lines.size() != entries) {
+            resize(entries);
+        }
+        int pages = (options.size() + pageSize - 1) / pageSize;
+        int first = page * pageSize;
+        int last = Math.min(options.size(), first + pageSize);
+        byte[] navigation = (String.format(NAVIGATION, page + 1, pages) + LINE_SEPARATOR).getBytes(charset);
+
+        int length = header.length + navigation.length;
+        for (int i = first; i < last; i++) {
+            length += line(options, footer, i).length;
+        }
+        for (int i = options.size(); i < entries; i++) {
+            length += line(options, footer, i).length;
+        }
+
+        byte[] assembled = new byte[length];
+        int offset = append(assembled, 0, header);
+        for (int i = first; i < last; i++) {
+            offset = append(assembled, offset, lines.get(i));
+        }
+        for (int i = options.size(); i < entries; i++) {
+            offset = append(assembled, offset, lines.get(i));
+        }
+        append(assembled, offset, navigation);
+        return assembled;
+    }
+
+    private void prepare(int optionCount, List<?> footer, Charset charset) {
+        if (!charset.equals(this.charset)) {
+            this.charset = charset;
+            header = (HEADER + LINE_SEPARATOR).getBytes(charset);
+            invalidateFrom(0);
+        }
+        if (footer != this.footer) {
+            // The same menu can be displayed as a root menu or a submenu, which have different footers
+            this.footer = footer;
+            invalidateFrom(optionCount);
+        }
+    }
+
+    private void resize(int entries) {
+        while (lines.size() < entries) {
+            lines.add(null);
+        }
+        while (lines.size() > entries) {
+            lines.remove(lines.size() - 1);
+        }
+    }
+
+    /**
+     * @return The encoded entry at the given index, encoding it if it is not cached yet
+     */
+    private byte[] line(List<?> options, List<?> footer, int i) {
+        byte[] line = lines.get(i);
+        if (line == null) {
+            Object entry = i < options.size() ? options.get(i) : footer.get(i - options.size());
+            line = ("[" + (i + 1) + "] - " + entry + LINE_SEPARATOR).getBytes(charset);
+            lines.set(i, line);
+        }
+        return line;
+    }
+
+    private static int append(byte[] destination, int offset, byte[] bytes) {
+        System.arraycopy(bytes, 0, destination, offset, bytes.length);
+        return offset + bytes.length;
+    }
+}
@@ -0,0 +1,291 @@
+package io.github.yashar256.looper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Serves a single {@link MenuLooper} to many users at once over TCP or Unix domain sockets.
+ *
+ * Every connection is a separate session with its own {@link MenuLooper.Scanner} and {@link MenuLooper.Output}, while the options themselves are shared.
+ * Options should therefore write to {@code scanner.getOutput()} rather than {@link System#out}, and must not be added or removed while the server is running.
+ * Sessions run on virtual threads when the JVM supports them, and on a pool of platform threads otherwise.
+ */
+public class MenuServer implements Closeable {
+    private static final String BUSY_MESSAGE = "The server is busy, please try again later" + System.lineSeparator();
+    private static final Logger LOGGER = Logger.getLogger(MenuServer.class.getName());
+    /** How long the acceptor waits after accept fails, so that a lasting problem such as running out of file descriptors does not busy-loop */
+    private static final long ACCEPT_RETRY_DELAY_MILLIS = 100;
+
+    private final MenuLooper menu;
+    private final Set<Session> sessions = ConcurrentHashMap.newKeySet();
+    private int maxSessions = 1024;
+    private Duration idleTimeout = Duration.ofMinutes(10);
+    private Charset charset = StandardCharsets.UTF_8;
+    private SessionRecorder recorder;
+
+    private ServerSocketChannel server;
+    private Semaphore sessionPermits;
+    private ExecutorService executor;
+    private ScheduledExecutorService watchdog;
+    private Thread acceptor;
+
+    /**
+     * @param menu The menu served to every session
+     */
+    public MenuServer(MenuLooper menu) {
+        this.menu = menu;
+    }
+
+    /**
+     * Sets how many sessions can be open at once. Connections beyond this are told the server is busy and closed. Defaults to 1024.
+     * @param maxSessions The maximum number of concurrent sessions
+     */
+    public void setMaxSessions(int maxSessions) {
+        if (maxSessions < 1) {
+            throw new IllegalArgumentException("maxSessions must be positive");
+        }
+        this.maxSessions = maxSessions;
+    }
+
+    /**
+     * Sets how long a session may wait for input before it is closed. Time spent running an option does not count. Defaults to 10 minutes.
+     * @param idleTimeout The idle timeout
+     */
+    public void setIdleTimeout(Duration idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Sets the charset used to decode input and encode output. Defaults to UTF-8.
+     * @param charset The charset
+     */
+    public void setCharset(Charset charset) {
+        this.charset = charset;
+    }
+
+    /**
+     * Records every session to the given recorder, so that they can be replayed with {@link SessionReplayer}. The recorder is not closed with the server.
+     * @param recorder The recorder, or null to stop recording new sessions
+     */
+    public void setRecorder(SessionRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Starts accepting connections in the background.
+     * @param address An {@link java.net.InetSocketAddress}, or a {@code UnixDomainSocketAddress} on Java 16 and above
+     * @throws IOException If the address cannot be bound
+     */
+    public synchronized void start(SocketAddress address) throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("The server has already been started");
+        }
+        server = openServerChannel(address);
+        server.bind(address);
+        sessionPermits = new Semaphore(maxSessions);
+        executor = newSessionExecutor();
+        watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> daemon(runnable, "menu-server-watchdog"));
+        long period = Math.max(10, Math.min(1000, idleTimeout.toMillis() / 2));
+        watchdog.scheduleAtFixedRate(this::closeIdleSessions, period, period, TimeUnit.MILLISECONDS);
+        acceptor = daemon(this::acceptConnections, "menu-server-acceptor");
+        acceptor.start();
+    }
+
+    /**
+     * @return The address the server is listening on, which includes the chosen port if port 0 was given
+     * @throws IOException If the address cannot be read
+     */
+    public SocketAddress getLocalAddress() throws IOException {
+        return server.getLocalAddress();
+    }
+
+    /**
+     * @return The number of sessions which are currently open
+     */
+    public int getActiveSessions() {
+        return sessions.size();
+    }
+
+    /**
+     * Stops accepting connections and closes every open session.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (server == null) {
+            return;
+        }
+        server.close();
+        for (Session session : sessions) {
+            session.close();
+        }
+        watchdog.shutdownNow();
+        executor.shutdown();
+    }
+
+    private void acceptConnections() {
+        while (server.isOpen()) {
+            SocketChannel channel;
+            try {
+                channel = server.accept();
+            } catch (IOException e) {
+                // Closing the server interrupts accept, which is how the acceptor stops
+                if (!server.isOpen()) {
+                    return;
+                }
+                // Other failures, such as running out of file descriptors or a client resetting before being accepted, usually pass
+                LOGGER.log(Level.WARNING, "Failed to accept a connection", e);
+                try {
+                    Thread.sleep(ACCEPT_RETRY_DELAY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+                continue;
+            }
+            if (!sessionPermits.tryAcquire()) {
+                reject(channel);
+                continue;
+            }
+            Session session = new Session(channel);
+            sessions.add(session);
+            try {
+                executor.execute(session);
+            } catch (RejectedExecutionException e) {
+                // The server is being closed
+                sessions.remove(session);
+                session.close();
+                sessionPermits.release();
+            }
+        }
+    }
+
+    private void reject(SocketChannel channel) {
+        try (SocketChannel rejected = channel) {
+            ByteBuffer message = charset.encode(BUSY_MESSAGE);
+            while (message.hasRemaining()) {
+                rejected.write(message);
+            }
+        } catch (IOException e) {
+            // The client went away before being told, which does not matter
+        }
+    }
+
+    private void closeIdleSessions() {
+        long now = System.nanoTime();
+        long timeout = idleTimeout.toNanos();
+        for (Session session : sessions) {
+            if (session.reading && now - session.lastActivity > timeout) {
+                session.close();
+            }
+        }
+    }
+
+    private static ServerSocketChannel openServerChannel(SocketAddress address) throws IOException {
+        if (!address.getClass().getName().equals("java.net.UnixDomainSocketAddress")) {
+            return ServerSocketChannel.open();
+        }
+        // Unix domain sockets were added in Java 16, after the Java 8 baseline
+        try {
+            Method open = ServerSocketChannel.class.getMethod("open", ProtocolFamily.class);
+            return (ServerSocketChannel) open.invoke(null, StandardProtocolFamily.valueOf("UNIX"));
+        } catch (ReflectiveOperationException | IllegalArgumentException e) {
+            throw new IOException("Unix domain sockets are not supported by this JVM", e);
+        }
+    }
+
+    private static ExecutorService newSessionExecutor() {
+        try {
+            Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtual.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // Before Java 21 every session needs a platform thread, which the session permits keep bounded.
+            // The pool itself is unbounded because a finished session releases its permit slightly before its thread is free again.
+            return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                    runnable -> daemon(runnable, "menu-server-session"));
+        }
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private class Session implements Runnable, ReadableByteChannel {
+        private final SocketChannel channel;
+        private volatile boolean reading;
+        private volatile long lastActivity = System.nanoTime();
+
+        Session(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void run() {
+            MenuLooper.Output out = new MenuLooper.Output(channel, charset);
+            try {
+                MenuLooper.Scanner scanner = new MenuLooper.Scanner(this, out);
+                if (recorder != null) {
+                    scanner.setRecorder(recorder);
+                }
+                menu.run(scanner);
+            } catch (NoSuchElementException | UncheckedIOException e) {
+                // The client disconnected or was closed for being idle
+            } finally {
+                close();
+                sessionPermits.release();
+                sessions.remove(this);
+            }
+        }
+
+        @Override
+        public int read(ByteBuffer destination) throws IOException {
+            lastActivity = System.nanoTime();
+            reading = true;
+            try {
+                return channel.read(destination);
+            } finally {
+                reading = false;
+                lastActivity = System.nanoTime();
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Nothing else can be done with a channel that fails to close
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package io.github.yashar256.looper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A case-insensitive index of menu options by name and alias, so that an option can be found from its name or any unique prefix of it in time proportional to the length of the key, however many options there are.
+ *
+ * Every node knows whether all of the keys below it belong to the same value, which is what makes unique prefixes cheap to resolve.
+ * Children are kept in sorted parallel arrays rather than maps to keep large menus compact.
+ */
+final class OptionTrie<T> {
+    /** Marks a node with keys for more than one value below it */
+    private static final Object MULTIPLE = new Object();
+
+    private final Node<T> root = new Node<>();
+
+    /**
+     * Adds a key for the value. The same value may have several keys, and several values may share a key.
+     */
+    void put(String key, T value) {
+        Node<T> node = root;
+        List<Node<T>> path = new ArrayList<>(key.length() + 1);
+        path.add(node);
+        for (int i = 0; i < key.length(); i++) {
+            node = node.child(Character.toLowerCase(key.charAt(i)), true);
+            path.add(node);
+        }
+        if (node.values == null) {
+            node.values = new ArrayList<>(1);
+        }
+        node.values.add(value);
+        update(path);
+    }
+
+    /**
+     * Removes a key added for the value.
+     */
+    void remove(String key, T value) {
+        Node<T> node = root;
+        List<Node<T>> path = new ArrayList<>(key.length() + 1);
+        path.add(node);
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.child(Character.toLowerCase(key.charAt(i)), false);
+            path.add(node);
+        }
+        if (node == null || node.values == null || !node.values.remove(value)) {
+            return;
+        }
+        if (node.values.isEmpty()) {
+            node.values = null;
+        }
+        update(path);
+    }
+
+    /**
+     * @return The values with exactly this key, ignoring case
+     */
+    List<T> exact(String key) {
+        Node<T> node = find(key);
+        return node == null || node.values == null ? Collections.<T>emptyList() : node.values;
+    }
+
+    /**
+     * Finds the values a key refers to. A key which is an entire name refers to the values with that name, even if it is also the start of other names.
+     * Otherwise it refers to every value with a name starting with the key.
+     * @return The values, which is a single value if the key is not ambiguous, or empty if nothing matches
+     */
+    List<T> resolve(String key) {
+        Node<T> node = find(key);
+        if (node == null) {
+            return Collections.emptyList();
+        }
+        if (node.values != null) {
+            return node.values;
+        }
+        if (node.unique != MULTIPLE) {
+            @SuppressWarnings("unchecked")
+            T unique = (T) node.unique;
+            return Collections.singletonList(unique);
+        }
+        return startingWith(key);
+    }
+
+    /**
+     * @return Every value with a name starting with the prefix, in alphabetical order of their names
+     */
+    List<T> startingWith(String prefix) {
+        Node<T> node = find(prefix);
+        if (node == null) {
+            return Collections.emptyList();
+        }
+        Set<T> values = new LinkedHashSet<>();
+        collect(node, values);
+        return new ArrayList<>(values);
+    }
+
+    private Node<T> find(String key) {
+        Node<T> node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.child(Character.toLowerCase(key.charAt(i)), false);
+        }
+        return node;
+    }
+
+    private static <T> void collect(Node<T> node, Set<T> values) {
+        if (node.values != null) {
+            values.addAll(node.values);
+        }
+        for (int i = 0; i < node.size; i++) {
+            collect(node.children[i], values);
+        }
+    }
+
+    /**
+     * Recomputes the nodes along a path from the deepest up, removing any which no longer lead to a key.
+     */
+    private static <T> void update(List<Node<T>> path) {
+        for (int i = path.size() - 1; i >= 0; i--) {
+            Node<T> node = path.get(i);
+            node.unique = node.computeUnique();
+            if (node.unique == null && i > 0) {
+                path.get(i - 1).removeChild(node);
+            }
+        }
+    }
+
+    private static final class Node<T> {
+        private static final char[] NO_KEYS = new char[0];
+
+        private char[] keys = NO_KEYS;
+        private Node<T>[] children;
+        private int size;
+        /** The values with a key ending at this node */
+        private List<T> values;
+        /** The only value with a key at or below this node, {@link #MULTIPLE} if there are several, or null if there are none */
+        private Object unique;
+
+        Node<T> child(char key, boolean create) {
+            int index = Arrays.binarySearch(keys, 0, size, key);
+            if (index >= 0) {
+                return children[index];
+            }
+            if (!create) {
+                return null;
+            }
+            index = -index - 1;
+            if (size == keys.length) {
+                int capacity = Math.max(2, size * 2);
+                keys = Arrays.copyOf(keys, capacity);
+                children = children == null ? newArray(capacity) : Arrays.copyOf(children, capacity);
+            }
+            System.arraycopy(keys, index, keys, index + 1, size - index);
+            System.arraycopy(children, index, children, index + 1, size - index);
+            Node<T> child = new Node<>();
+            keys[index] = key;
+            children[index] = child;
+            size++;
+            return child;
+        }
+
+        void removeChild(Node<T> child) {
+            for (int i = 0; i < size; i++) {
+                if (children[i] == child) {
+                    System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+                    System.arraycopy(children, i + 1, children, i, size - i - 1);
+                    size--;
+                    children[size] = null;
+                    return;
+                }
+            }
+        }
+
+        Object computeUnique() {
+            Object found = null;
+            if (values != null) {
+                for (T value : values) {
+                    if (found == null) {
+                        found = value;
+                    } else if (found != value) {
+                        return MULTIPLE;
+                    }
+                }
+            }
+            for (int i = 0; i < size; i++) {
+                Object below = children[i].unique;
+                if (below == MULTIPLE || (found != null && below != found)) {
+                    return MULTIPLE;
+                }
+                found = below;
+            }
+            return found;
+        }
+
+        // Generic arrays cannot be created directly. The array only ever holds nodes of the same trie, so the cast is safe
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private static <T> Node<T>[] newArray(int length) {
+            return (Node<T>[]) new Node[length];
+        }
+    }
+}
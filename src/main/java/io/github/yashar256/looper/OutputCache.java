@@ -0,0 +1,133 @@
+package io.github.yashar256.looper;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Remembers the output of a {@link MenuLooper}'s cached options, so that selecting one again writes the same bytes instead of running it.
+ *
+ * Each entry belongs to a tag, and invalidating a tag discards its entries. Entries are kept in order of use, and the least recently used are evicted once their total size exceeds the limit.
+ * Every tag has a generation which invalidating it increments, so that output which was being rendered while its tag was invalidated is not stored.
+ */
+final class OutputCache {
+    private final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Long> generations = new HashMap<>();
+    private long maxBytes = 1 << 20;
+    private long bytes;
+    private long hits;
+    private long misses;
+
+    synchronized void setMaxBytes(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes must not be negative");
+        }
+        this.maxBytes = maxBytes;
+        evict();
+    }
+
+    /**
+     * Writes the output of an option, rendering it with the given function only if it is not already cached in the output's charset.
+     * @param key The option
+     * @param tag The tag the option's output depends on
+     * @param render The function which writes the option's output
+     * @param out The output to write to
+     */
+    void write(Object key, String tag, Consumer<MenuLooper.Output> render, MenuLooper.Output out) {
+        Charset charset = out.charset();
+        byte[] cached = null;
+        long generation;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.charset.equals(charset)) {
+                hits++;
+                cached = entry.bytes;
+            } else {
+                misses++;
+            }
+            generation = generations.getOrDefault(tag, 0L);
+        }
+        if (cached != null) {
+            // The bytes are never modified, so they are written without holding the lock in case the output blocks
+            out.write(cached);
+            return;
+        }
+        ByteArrayOutputStream rendered = new ByteArrayOutputStream();
+        MenuLooper.Output capture = new MenuLooper.Output(rendered, charset);
+        render.accept(capture);
+        capture.flush();
+        byte[] output = rendered.toByteArray();
+        out.write(output);
+        put(key, new Entry(tag, charset, output), generation);
+    }
+
+    private synchronized void put(Object key, Entry entry, long generation) {
+        if (generations.getOrDefault(entry.tag, 0L) != generation || entry.bytes.length > maxBytes) {
+            return;
+        }
+        Entry replaced = entries.put(key, entry);
+        if (replaced != null) {
+            bytes -= replaced.bytes.length;
+        }
+        bytes += entry.bytes.length;
+        evict();
+    }
+
+    /**
+     * Discards the cached output of every option which depends on any of the given tags.
+     */
+    synchronized void invalidate(String... tags) {
+        for (String tag : tags) {
+            generations.merge(tag, 1L, Long::sum);
+        }
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+            Entry entry = it.next();
+            for (String tag : tags) {
+                if (entry.tag.equals(tag)) {
+                    bytes -= entry.bytes.length;
+                    it.remove();
+                    break;
+                }
+            }
+        }
+    }
+
+    synchronized void remove(Object key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            bytes -= removed.bytes.length;
+        }
+    }
+
+    synchronized long getHits() {
+        return hits;
+    }
+
+    synchronized long getMisses() {
+        return misses;
+    }
+
+    private void evict() {
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            bytes -= eldest.next().bytes.length;
+            eldest.remove();
+        }
+    }
+
+    private static final class Entry {
+        final String tag;
+        final Charset charset;
+        final byte[] bytes;
+
+        Entry(String tag, Charset charset, byte[] bytes) {
+            this.tag = tag;
+            this.charset = charset;
+            this.bytes = bytes;
+        }
+    }
+}
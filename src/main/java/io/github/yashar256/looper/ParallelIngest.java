@@ -0,0 +1,243 @@
+package io.github.yashar256.looper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Reads every number in a large file into an array, using all available cores.
+ *
+ * The file is memory-mapped and split into chunks at line boundaries, which are parsed in parallel on the common {@link ForkJoinPool} and joined in their original order.
+ * Numbers are separated by whitespace and use the same formats as {@link MenuLooper.Scanner}. Files must be encoded in UTF-8 or ASCII.
+ * A word which is not a number is reported with a {@link ScriptInputException} giving its exact line and column, just like {@link MenuLooper#runScript}.
+ */
+public final class ParallelIngest {
+    private static final long MIN_CHUNK_SIZE = 1 << 20;
+    private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+    private ParallelIngest() {
+    }
+
+    /**
+     * Reads every integer in the file.
+     * @param file The file to read
+     * @return The integers in the order they appear in the file
+     * @throws IOException If the file cannot be read
+     * @throws ScriptInputException If the file contains a word which is not an integer, or an integer which does not fit in a long
+     */
+    public static long[] readLongs(Path file) throws IOException {
+        List<Chunk> chunks = parse(file, false);
+        long[] values = new long[totalCount(chunks)];
+        int offset = 0;
+        for (Chunk chunk : chunks) {
+            System.arraycopy(chunk.longs, 0, values, offset, chunk.count);
+            offset += chunk.count;
+        }
+        return values;
+    }
+
+    /**
+     * Reads every decimal in the file.
+     * @param file The file to read
+     * @return The decimals in the order they appear in the file
+     * @throws IOException If the file cannot be read
+     * @throws ScriptInputException If the file contains a word which is not a decimal
+     */
+    public static double[] readDoubles(Path file) throws IOException {
+        List<Chunk> chunks = parse(file, true);
+        double[] values = new double[totalCount(chunks)];
+        int offset = 0;
+        for (Chunk chunk : chunks) {
+            System.arraycopy(chunk.doubles, 0, values, offset, chunk.count);
+            offset += chunk.count;
+        }
+        return values;
+    }
+
+    private static List<Chunk> parse(Path file, boolean decimal) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<Chunk> chunks = split(channel, decimal);
+            try {
+                if (!chunks.isEmpty()) {
+                    ForkJoinPool.commonPool().invoke(new ParseTask(chunks, 0, chunks.size()));
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            // Only the first bad word in the file is reported, so every chunk before it must have been read in full
+            long lines = 0;
+            for (Chunk chunk : chunks) {
+                if (chunk.error != null) {
+                    throw new ScriptInputException(chunk.problem, lines + chunk.error.getLine(), chunk.error.getColumn());
+                }
+                lines += chunk.lines;
+            }
+            return chunks;
+        }
+    }
+
+    /**
+     * Splits the file into chunks of roughly equal size which each end just after a line feed, so that no word or line is split between chunks.
+     */
+    private static List<Chunk> split(FileChannel channel, boolean decimal) throws IOException {
+        long size = channel.size();
+        long chunkSize = Math.max(MIN_CHUNK_SIZE, size / (ForkJoinPool.getCommonPoolParallelism() * 4L) + 1);
+        List<Chunk> chunks = new ArrayList<>();
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long start = 0;
+        while (start < size) {
+            long end = Math.min(size, start + chunkSize);
+            while (end < size) {
+                probe.clear();
+                int read = channel.read(probe, end);
+                if (read < 0) {
+                    end = size;
+                    break;
+                }
+                int lineFeed = indexOfLineFeed(probe, read);
+                if (lineFeed >= 0) {
+                    end += lineFeed + 1;
+                    break;
+                }
+                end += read;
+            }
+            chunks.add(new Chunk(channel, start, Math.min(end, size), decimal));
+            start = end;
+        }
+        return chunks;
+    }
+
+    private static int indexOfLineFeed(ByteBuffer buffer, int length) {
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int totalCount(List<Chunk> chunks) {
+        long total = 0;
+        for (Chunk chunk : chunks) {
+            total += chunk.count;
+        }
+        if (total > MAX_ARRAY_LENGTH) {
+            throw new IllegalArgumentException("The file contains " + total + " numbers, which is too many to fit in an array");
+        }
+        return (int) total;
+    }
+
+    /**
+     * Parses the chunks from start to end, splitting the range in half until there is a single chunk per task.
+     */
+    private static final class ParseTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Chunk> chunks;
+        private final int start;
+        private final int end;
+
+        ParseTask(List<Chunk> chunks, int start, int end) {
+            this.chunks = chunks;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start == 1) {
+                try {
+                    chunks.get(start).parse();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return;
+            }
+            int middle = (start + end) >>> 1;
+            invokeAll(new ParseTask(chunks, start, middle), new ParseTask(chunks, middle, end));
+        }
+    }
+
+    private static final class Chunk {
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+        private final boolean decimal;
+
+        long[] longs;
+        double[] doubles;
+        int count;
+        /** The number of lines in the chunk, once it has been read in full */
+        long lines;
+        /** The first bad word in the chunk, with its line relative to the start of the chunk */
+        ScriptInputException error;
+        String problem;
+
+        Chunk(FileChannel channel, long start, long end, boolean decimal) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+            this.decimal = decimal;
+        }
+
+        void parse() throws IOException {
+            // Closing the source would close the channel shared by every chunk, so it is left to the caller
+            MappedSource source = new MappedSource(channel, start, end, StandardCharsets.UTF_8);
+            Tokenizer tokenizer = new Tokenizer(source, () -> {});
+            tokenizer.trackPosition();
+            // Most numbers take at least 8 bytes with their separator, so the array rarely grows more than once or twice
+            int capacity = (int) Math.min(MAX_ARRAY_LENGTH, Math.max(16, (end - start) / 8));
+            if (decimal) {
+                doubles = new double[capacity];
+            } else {
+                longs = new long[capacity];
+            }
+
+            while (true) {
+                int status = decimal ? tokenizer.scanDouble() : tokenizer.scanLong(10, Long.MIN_VALUE, Long.MAX_VALUE);
+                if (status == Tokenizer.END_OF_INPUT) {
+                    break;
+                }
+                if (status != Tokenizer.OK) {
+                    problem = String.format("Expected %s but found \"%s\"", decimal ? "a decimal" : "an integer", tokenizer.token());
+                    error = tokenizer.error(problem);
+                    return;
+                }
+                tokenizer.consumeToken();
+                if (decimal) {
+                    if (count == doubles.length) {
+                        doubles = Arrays.copyOf(doubles, grow(count));
+                    }
+                    doubles[count++] = tokenizer.doubleValue();
+                } else {
+                    if (count == longs.length) {
+                        longs = Arrays.copyOf(longs, grow(count));
+                    }
+                    longs[count++] = tokenizer.longValue();
+                }
+            }
+            if (tokenizer.ioException() != null) {
+                throw tokenizer.ioException();
+            }
+            // The position is now at the end of the chunk, on the line after its last line feed
+            lines = tokenizer.line() - 1;
+        }
+
+        private static int grow(int length) {
+            if (length == MAX_ARRAY_LENGTH) {
+                throw new IllegalArgumentException("The file contains too many numbers to fit in an array");
+            }
+            return (int) Math.min(MAX_ARRAY_LENGTH, length * 2L);
+        }
+    }
+}
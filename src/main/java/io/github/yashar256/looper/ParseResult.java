@@ -0,0 +1,97 @@
+package io.github.yashar256.looper;
+
+/**
+ * The outcome of one of the {@code tryNext} methods of {@link MenuLooper.Scanner}, such as {@link MenuLooper.Scanner#tryNextInt()}.
+ *
+ * Each Scanner reuses a single ParseResult so that reading input never allocates, which means a result is only valid until the next {@code tryNext} call on the same Scanner.
+ * The value accessors may only be called when the status is {@link Status#OK}.
+ */
+public final class ParseResult {
+    /**
+     * Why a value could or could not be read. The token is only consumed when the status is {@link #OK}.
+     */
+    public enum Status {
+        OK,
+        /** The next word is not of the requested type */
+        MISMATCH,
+        /** The next word is a number, but outside the range of the requested type */
+        OVERFLOW,
+        /** There is no more input */
+        END_OF_INPUT,
+        /** Nothing was entered before the timeout given to a method such as {@link MenuLooper.Scanner#tryNextInt(java.time.Duration)} */
+        TIMEOUT
+    }
+
+    private static final Status[] STATUSES = Status.values();
+
+    private Status status = Status.END_OF_INPUT;
+    private long longValue;
+    private double doubleValue;
+
+    ParseResult() {
+    }
+
+    /**
+     * @param status One of the {@link Tokenizer} status codes, which are in the same order as {@link Status}
+     */
+    ParseResult set(int status, long longValue, double doubleValue) {
+        this.status = status(status);
+        this.longValue = longValue;
+        this.doubleValue = doubleValue;
+        return this;
+    }
+
+    /**
+     * @param status One of the {@link Tokenizer} status codes
+     */
+    static Status status(int status) {
+        return STATUSES[status];
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return Whether a value was read
+     */
+    public boolean isOk() {
+        return status == Status.OK;
+    }
+
+    public boolean booleanValue() {
+        return longValue() != 0;
+    }
+
+    public byte byteValue() {
+        return (byte) longValue();
+    }
+
+    public short shortValue() {
+        return (short) longValue();
+    }
+
+    public int intValue() {
+        return (int) longValue();
+    }
+
+    public long longValue() {
+        checkOk();
+        return longValue;
+    }
+
+    public float floatValue() {
+        return (float) doubleValue();
+    }
+
+    public double doubleValue() {
+        checkOk();
+        return doubleValue;
+    }
+
+    private void checkOk() {
+        if (status != Status.OK) {
+            throw new IllegalStateException("No value was read: " + status);
+        }
+    }
+}
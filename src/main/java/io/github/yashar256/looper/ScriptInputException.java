@@ -0,0 +1,33 @@
+package io.github.yashar256.looper;
+
+import java.util.InputMismatchException;
+
+/**
+ * Thrown instead of asking again when a script run by {@link MenuLooper#runScript} contains input that cannot be used, such as a word where a number is expected or a selection which is not on the menu.
+ */
+public class ScriptInputException extends InputMismatchException {
+    private static final long serialVersionUID = 1L;
+
+    private final long line;
+    private final int column;
+
+    ScriptInputException(String problem, long line, int column) {
+        super(String.format("%s at line %d, column %d", problem, line, column));
+        this.line = line;
+        this.column = column;
+    }
+
+    /**
+     * @return The 1-based line of the script the problem was found on
+     */
+    public long getLine() {
+        return line;
+    }
+
+    /**
+     * @return The 1-based column of the script the problem was found on
+     */
+    public int getColumn() {
+        return column;
+    }
+}
@@ -0,0 +1,100 @@
+package io.github.yashar256.looper;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes text from a selectable channel, such as a socket or a pipe, and can wait for input with a {@link Selector} without reading it.
+ *
+ * {@link java.nio.channels.Channels#newReader} cannot be used for this because it keeps undecoded bytes where a selector cannot see them.
+ * The channel stays in blocking mode while it is read, and is only switched to non-blocking mode while waiting.
+ */
+final class SelectableSource implements Readable, Tokenizer.InputWaiter {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final ReadableByteChannel channel;
+    private final SelectableChannel selectable;
+    private final CharsetDecoder decoder;
+    private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+    private boolean endOfInput;
+    private boolean flushed;
+
+    /**
+     * @param channel The channel, which must also be a {@link SelectableChannel}
+     * @param charset The charset the input is encoded with
+     */
+    SelectableSource(ReadableByteChannel channel, Charset charset) {
+        this.channel = channel;
+        this.selectable = (SelectableChannel) channel;
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        bytes.flip();
+    }
+
+    @Override
+    public int read(CharBuffer target) throws IOException {
+        if (flushed) {
+            return -1;
+        }
+        int start = target.position();
+        while (true) {
+            decoder.decode(bytes, target, endOfInput);
+            if (target.position() > start) {
+                return target.position() - start;
+            }
+            if (endOfInput) {
+                decoder.flush(target);
+                flushed = true;
+                return target.position() > start ? target.position() - start : -1;
+            }
+            bytes.compact();
+            try {
+                endOfInput = channel.read(bytes) < 0;
+            } finally {
+                bytes.flip();
+            }
+        }
+    }
+
+    @Override
+    public boolean await(long nanos) throws IOException {
+        if (bytes.hasRemaining() || endOfInput) {
+            return true;
+        }
+        // A selector is only opened while waiting so that nothing needs to be closed when the Scanner is discarded
+        try (Selector selector = Selector.open()) {
+            synchronized (selectable.blockingLock()) {
+                selectable.configureBlocking(false);
+                SelectionKey key = selectable.register(selector, SelectionKey.OP_READ);
+                try {
+                    long deadline = System.nanoTime() + nanos;
+                    long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+                    // Selecting can return early without the channel being ready, so it is repeated until the deadline
+                    while (millis > 0) {
+                        if (selector.select(millis) > 0) {
+                            return true;
+                        }
+                        millis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    }
+                    return selector.selectNow() > 0;
+                } finally {
+                    key.cancel();
+                    // The channel can only be made blocking again once the cancelled key is deregistered
+                    selector.selectNow();
+                    selectable.configureBlocking(true);
+                }
+            }
+        }
+    }
+}
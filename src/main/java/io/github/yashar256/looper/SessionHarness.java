@@ -0,0 +1,165 @@
+package io.github.yashar256.looper;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Runs many scripted sessions at once for testing, each with its own in-memory input and output, so that large suites of menus can be tested in parallel in a single JVM.
+ *
+ * A session runs a {@link MenuLooper} with the given input and compares everything it displays with the expected output.
+ * A scanner case instead runs a single function against a {@link MenuLooper.Scanner} and compares its result.
+ * Nothing touches {@link System#in} or {@link System#out}, so options should write to {@code scanner.getOutput()} if their output is to be checked.
+ * Line separators in the output are replaced with {@code "\n"}, so expected output can be written the same way on every platform.
+ */
+public final class SessionHarness {
+    private final List<Case> cases = new ArrayList<>();
+
+    /**
+     * Adds a session which runs the menu with the given input. The same menu can be used by many sessions, as long as its options do not share state.
+     * @param name The name the session is reported with
+     * @param menu The menu to run
+     * @param input Everything the user types, such as {@code "1\n42\n2\n"}
+     * @param expectedOutput Everything the menu should display, or null to only check that the session finishes without an exception
+     */
+    public void addSession(String name, MenuLooper menu, String input, String expectedOutput) {
+        cases.add(new Case(name, input, expectedOutput, scanner -> {
+            menu.run(scanner);
+            return null;
+        }, true));
+    }
+
+    /**
+     * Adds a case which calls a single function with a Scanner reading the given input, and compares what it returns. Prompts are not checked.
+     * @param name The name the case is reported with
+     * @param input Everything the user types
+     * @param expected The value the function should return
+     * @param test The function, such as {@code scanner -> scanner.nextInt("Int")}
+     */
+    public <T> void addScannerCase(String name, String input, T expected, Function<MenuLooper.Scanner, T> test) {
+        cases.add(new Case(name, input, expected, test, false));
+    }
+
+    /**
+     * Runs every session and case in parallel on the common {@link java.util.concurrent.ForkJoinPool}, and waits for them to finish.
+     * @return The results, in the order the sessions and cases were added
+     */
+    public List<Result> run() {
+        return cases.parallelStream().map(Case::run).collect(Collectors.toList());
+    }
+
+    /**
+     * The outcome of a single session or case.
+     */
+    public static final class Result {
+        private final String name;
+        private final boolean passed;
+        private final Object expected;
+        private final Object actual;
+        private final Throwable failure;
+        private final long elapsed;
+
+        private Result(String name, boolean passed, Object expected, Object actual, Throwable failure, long elapsed) {
+            this.name = name;
+            this.passed = passed;
+            this.expected = expected;
+            this.actual = actual;
+            this.failure = failure;
+            this.elapsed = elapsed;
+        }
+
+        /**
+         * @return The name the session or case was added with
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return Whether the output or value was as expected and no exception was thrown
+         */
+        public boolean passed() {
+            return passed;
+        }
+
+        /**
+         * @return The expected output of a session, or the expected value of a scanner case
+         */
+        public Object getExpected() {
+            return expected;
+        }
+
+        /**
+         * @return The output of a session, or the value returned by a scanner case, or null if an exception was thrown
+         */
+        public Object getActual() {
+            return actual;
+        }
+
+        /**
+         * @return The exception thrown by the session or case, or null if there was none
+         */
+        public Throwable getFailure() {
+            return failure;
+        }
+
+        /**
+         * @return How long the session or case took to run
+         */
+        public Duration getElapsed() {
+            return Duration.ofNanos(elapsed);
+        }
+
+        @Override
+        public String toString() {
+            if (passed) {
+                return name + " passed in " + getElapsed();
+            }
+            if (failure != null) {
+                return name + " failed with " + failure;
+            }
+            return name + " failed: expected <" + expected + "> but was <" + actual + ">";
+        }
+    }
+
+    private static final class Case {
+        private final String name;
+        private final String input;
+        private final Object expected;
+        private final Function<MenuLooper.Scanner, ?> test;
+        private final boolean comparesOutput;
+
+        Case(String name, String input, Object expected, Function<MenuLooper.Scanner, ?> test, boolean comparesOutput) {
+            this.name = name;
+            this.input = input;
+            this.expected = expected;
+            this.test = test;
+            this.comparesOutput = comparesOutput;
+        }
+
+        Result run() {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            MenuLooper.Output out = new MenuLooper.Output(bytes, StandardCharsets.UTF_8);
+            MenuLooper.Scanner scanner = new MenuLooper.Scanner(input, out);
+            long start = System.nanoTime();
+            Object actual;
+            try {
+                actual = test.apply(scanner);
+                out.flush();
+            } catch (RuntimeException | AssertionError e) {
+                return new Result(name, false, expected, null, e, System.nanoTime() - start);
+            }
+            long elapsed = System.nanoTime() - start;
+            if (comparesOutput) {
+                actual = new String(bytes.toByteArray(), StandardCharsets.UTF_8).replace(System.lineSeparator(), "\n");
+                return new Result(name, expected == null || expected.equals(actual), expected, actual, null, elapsed);
+            }
+            return new Result(name, Objects.equals(expected, actual), expected, actual, null, elapsed);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package io.github.yashar256.looper;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Records everything that sessions of a {@link MenuLooper} read and write to a compact, append-only binary log, so that they can be replayed with {@link SessionReplayer}.
+ *
+ * Every record is a kind byte followed by the session it belongs to, the microseconds since that session's previous record and the length of its payload, each as an unsigned varint, and then the payload itself.
+ * Input records hold exactly the text a {@link MenuLooper.Scanner} consumed as UTF-8, including whitespace and input which was rejected, so that replaying them reproduces the session.
+ * Output records hold the bytes written to the session's {@link MenuLooper.Output}, in its own charset.
+ *
+ * Writes are buffered and synchronized, so a single recorder can be shared by every session of a {@link MenuServer}.
+ * A session's records are flushed when it ends, and everything else when {@link #flush} or {@link #close} is called.
+ */
+public final class SessionRecorder implements Flushable, Closeable {
+    /** Starts a session, with the name of its output charset as the payload */
+    static final byte START = 0;
+    static final byte SELECTION = 1;
+    static final byte TOKEN = 2;
+    static final byte LINE = 3;
+    static final byte OUTPUT = 4;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final OutputStream out;
+    private int sessions;
+
+    /**
+     * Creates a recorder which writes to the given stream.
+     * @param out The stream the log is written to
+     */
+    public SessionRecorder(OutputStream out) {
+        this.out = new BufferedOutputStream(out, BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a recorder which appends to the given file, creating it if it does not exist.
+     * @param log The log file
+     * @throws IOException If the file cannot be opened
+     */
+    public SessionRecorder(Path log) throws IOException {
+        this(Files.newOutputStream(log, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND));
+    }
+
+    /**
+     * Starts recording a new session.
+     * @param charset The charset of the session's output
+     */
+    synchronized Session startSession(Charset charset) {
+        Session session = new Session(sessions++);
+        session.record(START, charset.name());
+        return session;
+    }
+
+    @Override
+    public synchronized void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private synchronized void write(byte kind, int session, long delay, byte[] payload, ByteBuffer bytes) {
+        try {
+            out.write(kind);
+            writeVarint(session);
+            writeVarint(delay);
+            if (payload != null) {
+                writeVarint(payload.length);
+                out.write(payload);
+            } else {
+                writeVarint(bytes.remaining());
+                if (bytes.hasArray()) {
+                    out.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+                } else {
+                    // Direct buffers have no array, so they are copied in small pieces rather than all at once
+                    byte[] piece = new byte[Math.min(bytes.remaining(), 1024)];
+                    while (bytes.hasRemaining()) {
+                        int length = Math.min(piece.length, bytes.remaining());
+                        bytes.get(piece, 0, length);
+                        out.write(piece, 0, length);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeVarint(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * The recording of a single session, which keeps the time of its previous record.
+     */
+    final class Session {
+        private final int id;
+        private long last = System.nanoTime();
+
+        private Session(int id) {
+            this.id = id;
+        }
+
+        /**
+         * Records input which was consumed by the session.
+         */
+        void record(byte kind, String text) {
+            write(kind, id, delay(), text.getBytes(StandardCharsets.UTF_8), null);
+        }
+
+        /**
+         * Records output written by the session, which is the bytes from the buffer's position to its limit. The buffer itself is left unchanged.
+         */
+        void recordOutput(ByteBuffer bytes) {
+            write(OUTPUT, id, delay(), null, bytes.duplicate());
+        }
+
+        void flush() {
+            SessionRecorder.this.flush();
+        }
+
+        private long delay() {
+            long now = System.nanoTime();
+            long delay = (now - last) / 1000;
+            // Only whole microseconds are recorded, so the remainder is carried over rather than lost
+            last += delay * 1000;
+            return delay;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package io.github.yashar256.looper;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays sessions recorded by a {@link SessionRecorder} against a {@link MenuLooper}, either at the pace they were recorded at or as fast as possible.
+ *
+ * The recorded input is fed to the menu exactly as it was consumed, and the output of the replay is kept so that it can be compared with the recorded output.
+ * This makes recorded sessions usable both for reproducing problems and as realistic workloads for benchmarks.
+ * A log which ends partway through a record, such as one written by a process which crashed, is read up to its last complete record.
+ */
+public final class SessionReplayer {
+    private final List<Session> sessions = new ArrayList<>();
+
+    /**
+     * Reads every session in the given log.
+     * @param log The log file
+     * @throws IOException If the file cannot be read or is not a session log
+     */
+    public SessionReplayer(Path log) throws IOException {
+        try (InputStream in = Files.newInputStream(log)) {
+            read(in);
+        }
+    }
+
+    /**
+     * Reads every session in the given log.
+     * @param log The stream the log is read from, which is read to the end but not closed
+     * @throws IOException If the stream cannot be read or is not a session log
+     */
+    public SessionReplayer(InputStream log) throws IOException {
+        read(log);
+    }
+
+    /**
+     * @return The number of sessions in the log, in the order they were started
+     */
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * Runs the menu with the input of a recorded session.
+     * @param session The index of the session, from 0
+     * @param menu The menu to replay the session against
+     * @param originalPace Whether to wait as long between inputs as the user did, rather than replaying as fast as possible
+     * @return The recorded and replayed output
+     */
+    public Replay replay(int session, MenuLooper menu, boolean originalPace) {
+        Session recorded = sessions.get(session);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        MenuLooper.Output out = new MenuLooper.Output(bytes, recorded.charset);
+        long start = System.nanoTime();
+        menu.run(new MenuLooper.Scanner(new Source(recorded, originalPace, start), out, out, true));
+        long elapsed = System.nanoTime() - start;
+        return new Replay(new String(recorded.output.toByteArray(), recorded.charset), new String(bytes.toByteArray(), recorded.charset), elapsed);
+    }
+
+    private void read(InputStream log) throws IOException {
+        InputStream in = new BufferedInputStream(log);
+        Map<Long, Session> open = new HashMap<>();
+        while (true) {
+            int kind = in.read();
+            if (kind < 0) {
+                return;
+            }
+            byte[] payload;
+            long id;
+            long delay;
+            try {
+                id = readVarint(in);
+                delay = readVarint(in);
+                long length = readVarint(in);
+                if (length > Integer.MAX_VALUE - 8) {
+                    throw new IOException("Malformed session log: a record is " + length + " bytes long");
+                }
+                payload = readFully(in, (int) length);
+            } catch (EOFException e) {
+                // The last record was cut short, which only loses that record
+                return;
+            }
+
+            if (kind == SessionRecorder.START) {
+                // Logs are appended to, so a later recorder can reuse the ids of earlier sessions
+                Session session = new Session(Charset.forName(new String(payload, StandardCharsets.UTF_8)));
+                sessions.add(session);
+                open.put(id, session);
+                continue;
+            }
+            Session session = open.get(id);
+            if (session == null) {
+                throw new IOException("Malformed session log: session " + id + " was never started");
+            }
+            session.time += delay;
+            switch (kind) {
+                case SessionRecorder.SELECTION:
+                case SessionRecorder.TOKEN:
+                case SessionRecorder.LINE:
+                    session.inputs.add(new String(payload, StandardCharsets.UTF_8));
+                    session.times.add(session.time);
+                    break;
+                case SessionRecorder.OUTPUT:
+                    session.output.write(payload, 0, payload.length);
+                    break;
+                default:
+                    throw new IOException("Malformed session log: unknown record kind " + kind);
+            }
+        }
+    }
+
+    private static long readVarint(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed session log: a number is too long");
+    }
+
+    private static byte[] readFully(InputStream in, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            int read = in.read(bytes, offset, length - offset);
+            if (read < 0) {
+                throw new EOFException();
+            }
+            offset += read;
+        }
+        return bytes;
+    }
+
+    /**
+     * The outcome of replaying a session.
+     */
+    public static final class Replay {
+        private final String expectedOutput;
+        private final String actualOutput;
+        private final long elapsed;
+
+        private Replay(String expectedOutput, String actualOutput, long elapsed) {
+            this.expectedOutput = expectedOutput;
+            this.actualOutput = actualOutput;
+            this.elapsed = elapsed;
+        }
+
+        /**
+         * @return The output of the session when it was recorded
+         */
+        public String getExpectedOutput() {
+            return expectedOutput;
+        }
+
+        /**
+         * @return The output of the session when it was replayed
+         */
+        public String getActualOutput() {
+            return actualOutput;
+        }
+
+        /**
+         * @return Whether the replay wrote exactly the same output as the recorded session
+         */
+        public boolean outputMatches() {
+            return expectedOutput.equals(actualOutput);
+        }
+
+        /**
+         * @return How long the replay took
+         */
+        public Duration getElapsed() {
+            return Duration.ofNanos(elapsed);
+        }
+    }
+
+    private static final class Session {
+        private final Charset charset;
+        private final List<String> inputs = new ArrayList<>();
+        /** The microseconds from the start of the session until each input was consumed */
+        private final List<Long> times = new ArrayList<>();
+        private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        private long time;
+
+        Session(Charset charset) {
+            this.charset = charset;
+        }
+    }
+
+    /**
+     * Feeds the inputs of a session to a {@link MenuLooper.Scanner}, waiting until each one is due if the original pace is kept.
+     */
+    private static final class Source implements Readable {
+        private final Session session;
+        private final boolean originalPace;
+        private final long start;
+        private int input;
+        private int offset;
+
+        Source(Session session, boolean originalPace, long start) {
+            this.session = session;
+            this.originalPace = originalPace;
+            this.start = start;
+        }
+
+        @Override
+        public int read(CharBuffer destination) throws IOException {
+            while (input < session.inputs.size() && offset == session.inputs.get(input).length()) {
+                input++;
+                offset = 0;
+            }
+            if (input == session.inputs.size()) {
+                return -1;
+            }
+            if (offset == 0 && originalPace) {
+                long wait = start + TimeUnit.MICROSECONDS.toNanos(session.times.get(input)) - System.nanoTime();
+                if (wait > 0) {
+                    try {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("The replay was interrupted");
+                    }
+                }
+            }
+            String text = session.inputs.get(input);
+            int length = Math.min(destination.remaining(), text.length() - offset);
+            destination.put(text, offset, offset + length);
+            offset += length;
+            return length;
+        }
+    }
+}
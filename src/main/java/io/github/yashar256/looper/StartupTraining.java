@@ -0,0 +1,22 @@
+package io.github.yashar256.looper;
+
+/**
+ * A small menu program which loads the classes that a short-lived program using {@link MenuLooper} needs.
+ *
+ * The {@code appcds} profile runs it with a selection given as arguments to record which classes to put in the class data sharing archive,
+ * and the startup benchmarks start it as a separate process to measure how long it takes to display its menu or finish a selection.
+ */
+final class StartupTraining {
+    private StartupTraining() {
+    }
+
+    /**
+     * @param args The selections and their input, such as {@code Add 1 2}, or nothing to display the menu and read selections from {@link System#in}
+     */
+    public static void main(String[] args) {
+        MenuLooper menu = new MenuLooper();
+        menu.addOption("Add", scanner -> scanner.getOutput().println(Long.toString(scanner.nextLong("First number") + scanner.nextLong("Second number"))));
+        menu.addOption("Echo", scanner -> scanner.getOutput().println(scanner.nextLine("Text")));
+        menu.run(args);
+    }
+}
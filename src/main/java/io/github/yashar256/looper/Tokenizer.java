@@ -0,0 +1,976 @@
+package io.github.yashar256.looper;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.CharBuffer;
+
+/**
+ * The hand-written tokenizer behind {@link MenuLooper.Scanner}.
+ *
+ * Input is read from a {@link Readable} into a single growable char buffer, and tokens are parsed in place without regular expressions.
+ * Primitive values are returned through {@link #longValue}, {@link #doubleValue} and {@link #floatValue} together with a status code, so parsing a valid token does not allocate.
+ * A token is only consumed once {@link #consumeToken} is called, which lets the caller leave a mismatched token in place like {@link java.util.Scanner} does.
+ */
+final class Tokenizer {
+    static final int OK = 0;
+    static final int MISMATCH = 1;
+    static final int OVERFLOW = 2;
+    static final int END_OF_INPUT = 3;
+    static final int TIMEOUT = 4;
+
+    private static final int INITIAL_BUFFER_SIZE = 8192;
+    private static final int MAX_SIGNIFICANT_DIGITS = 19;
+    private static final long MAX_EXACT_DOUBLE = 1L << 53;
+    private static final long MAX_EXACT_FLOAT = 1L << 24;
+    private static final double[] DOUBLE_POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final float[] FLOAT_POWERS_OF_TEN = {
+        1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+    };
+
+    private final Readable source;
+    private final Runnable beforeRead;
+    private char[] buffer = new char[INITIAL_BUFFER_SIZE];
+    private CharBuffer view = CharBuffer.wrap(buffer);
+    private int position;
+    private int limit;
+    private boolean endOfInput;
+    private boolean skipLineFeed;
+    /** Whether a token has been consumed from the line {@link #position} is on, which tells a blank line apart from the end of a line of tokens */
+    private boolean lineHasToken;
+    private IOException ioException;
+
+    // Reads only wait for more input until the deadline, if one is set and the source can be waited on
+    private InputWaiter waiter;
+    private boolean hasDeadline;
+    private long deadline;
+    private boolean timedOut;
+
+    // Consumed input which has not been taken by takeRecorded yet, only kept while recording. Input before the mark is moved here before it is discarded from the buffer.
+    private StringBuilder recorded;
+    private int mark;
+
+    // Line and column bookkeeping for text already discarded from the buffer, only kept when tracking positions
+    private boolean trackPosition;
+    private long discardedLines;
+    private int discardedColumn;
+    private boolean discardedCarriageReturn;
+
+    private boolean hasToken;
+    private int tokenStart;
+    private int tokenEnd;
+    private int scan;
+
+    private long longValue;
+    private double doubleValue;
+    private float floatValue;
+    private BigInteger bigIntegerValue;
+    private BigDecimal bigDecimalValue;
+
+    // Scratch state of the last decimal scanned by scanDecimal
+    private boolean negative;
+    private long significand;
+    private int exponent;
+    private boolean exact;
+    private boolean special;
+
+    /**
+     * @param source Where characters are read from
+     * @param beforeRead Called every time the tokenizer is about to read from the source, which may block
+     */
+    Tokenizer(Readable source, Runnable beforeRead) {
+        this.source = source;
+        this.beforeRead = beforeRead;
+    }
+
+    long longValue() {
+        return longValue;
+    }
+
+    double doubleValue() {
+        return doubleValue;
+    }
+
+    float floatValue() {
+        return floatValue;
+    }
+
+    BigInteger bigIntegerValue() {
+        return bigIntegerValue;
+    }
+
+    BigDecimal bigDecimalValue() {
+        return bigDecimalValue;
+    }
+
+    /**
+     * @return The last exception thrown by the source, which is treated as the end of input
+     */
+    IOException ioException() {
+        return ioException;
+    }
+
+    /**
+     * Enables {@link #line} and {@link #column}. This costs an extra pass over all input, so it is only used where error positions are reported.
+     */
+    void trackPosition() {
+        trackPosition = true;
+    }
+
+    /**
+     * @param waiter Waits for the source to have input, which makes deadlines possible
+     */
+    void setWaiter(InputWaiter waiter) {
+        this.waiter = waiter;
+    }
+
+    /**
+     * Stops waiting for more input once {@link System#nanoTime} reaches the deadline. Running out of time is then treated like the end of input, except that {@link #timedOut} is set.
+     * Input which was only partly read before the deadline, such as a word without anything after it, is left to be read later.
+     */
+    void setDeadline(long deadline) {
+        this.deadline = deadline;
+        hasDeadline = true;
+        timedOut = false;
+    }
+
+    void clearDeadline() {
+        hasDeadline = false;
+    }
+
+    /**
+     * @return Whether the last read ran out of time rather than input
+     */
+    boolean timedOut() {
+        return timedOut;
+    }
+
+    /**
+     * Starts keeping every character consumed from now on, until it is taken by {@link #takeRecorded}.
+     */
+    void startRecording() {
+        recorded = new StringBuilder();
+        mark = position;
+    }
+
+    /**
+     * @return Everything consumed since the last call, or since recording started
+     */
+    String takeRecorded() {
+        recorded.append(buffer, mark, position - mark);
+        mark = position;
+        String text = recorded.toString();
+        recorded.setLength(0);
+        return text;
+    }
+
+    /**
+     * @return The 1-based line of the next token, or of the end of input if there are no more tokens
+     */
+    long line() {
+        int index = positionIndex();
+        long lines = discardedLines;
+        boolean carriageReturn = discardedCarriageReturn;
+        for (int i = 0; i < index; i++) {
+            char c = buffer[i];
+            if (isLineTerminator(c) && !(c == '\n' && carriageReturn)) {
+                lines++;
+            }
+            carriageReturn = c == '\r';
+        }
+        return lines + 1;
+    }
+
+    /**
+     * @return The 1-based column of the next token, or of the end of input if there are no more tokens
+     */
+    int column() {
+        int index = positionIndex();
+        int start = index;
+        while (start > 0 && !isLineTerminator(buffer[start - 1])) {
+            start--;
+        }
+        return (start == 0 ? discardedColumn : 0) + index - start + 1;
+    }
+
+    /**
+     * @return An exception describing a problem with the next token, at its line and column
+     */
+    ScriptInputException error(String problem) {
+        return new ScriptInputException(problem, line(), column());
+    }
+
+    private int positionIndex() {
+        if (!hasToken) {
+            skipWhitespace();
+        }
+        return hasToken ? tokenStart : position;
+    }
+
+    /**
+     * Finds the next token without consuming it, reading more input if necessary.
+     * @return Whether there is another token before the end of input
+     */
+    boolean hasToken() {
+        if (hasToken) {
+            return true;
+        }
+        if (!skipWhitespace()) {
+            return false;
+        }
+        tokenStart = position;
+        tokenEnd = position;
+        while (true) {
+            while (tokenEnd < limit) {
+                if (isWhitespace(buffer[tokenEnd])) {
+                    hasToken = true;
+                    return true;
+                }
+                tokenEnd++;
+            }
+            if (!fill()) {
+                if (timedOut) {
+                    return false;
+                }
+                hasToken = true;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Checks whether another token has already been read from the source, without reading any more.
+     * @return Whether the buffer holds anything other than whitespace
+     */
+    boolean hasBufferedToken() {
+        if (hasToken) {
+            return true;
+        }
+        for (int i = position; i < limit; i++) {
+            if (!isWhitespace(buffer[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The next token as a String, or null at the end of input
+     */
+    String token() {
+        return hasToken() ? new String(buffer, tokenStart, tokenEnd - tokenStart) : null;
+    }
+
+    /**
+     * @return The first character of the token found by {@link #hasToken}
+     */
+    char firstTokenChar() {
+        return buffer[tokenStart];
+    }
+
+    void consumeToken() {
+        position = tokenEnd;
+        hasToken = false;
+        lineHasToken = true;
+    }
+
+    /**
+     * @return Whether a token has already been consumed from the current line
+     */
+    boolean lineHasToken() {
+        return lineHasToken;
+    }
+
+    /**
+     * Skips whitespace up to the next token, unless there is a blank line before it, in which case the blank line is consumed instead.
+     * A line containing only whitespace counts as blank.
+     * @return Whether there is another token before the next blank line and the end of input
+     */
+    boolean hasTokenBeforeBlankLine() {
+        if (hasToken) {
+            return true;
+        }
+        boolean carriageReturn = skipLineFeed;
+        skipLineFeed = false;
+        while (true) {
+            while (position < limit) {
+                char c = buffer[position];
+                if (!isWhitespace(c)) {
+                    return true;
+                }
+                position++;
+                if (c == '\n' && carriageReturn) {
+                    // The second half of a \r\n terminator
+                    carriageReturn = false;
+                    continue;
+                }
+                carriageReturn = c == '\r';
+                if (isLineTerminator(c)) {
+                    if (!lineHasToken) {
+                        skipLineFeed = carriageReturn;
+                        return false;
+                    }
+                    lineHasToken = false;
+                }
+            }
+            if (!fill()) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Parses the next token as an integer of any size in the given radix and stores it in {@link #bigIntegerValue}.
+     * @param maxLength The most characters the token may have. Longer tokens are not read into the buffer in full, and are left to be skipped.
+     * @return {@link #OK}, {@link #MISMATCH}, {@link #OVERFLOW} if the token is too long, or {@link #END_OF_INPUT}
+     */
+    int scanBigInteger(int radix, int maxLength) {
+        int status = findToken(maxLength);
+        if (status != OK) {
+            return status;
+        }
+        int i = tokenStart;
+        int end = tokenEnd;
+        boolean isNegative = buffer[i] == '-';
+        if (isNegative || buffer[i] == '+') {
+            i++;
+        }
+        if (i == end) {
+            return MISMATCH;
+        }
+        for (int j = i; j < end; j++) {
+            char c = buffer[j];
+            if (!(c >= '0' && c <= '9' && c - '0' < radix) && Character.digit(c, radix) < 0) {
+                return MISMATCH;
+            }
+        }
+        BigInteger value = BigNumbers.parseDigits(buffer, i, end, radix);
+        bigIntegerValue = isNegative ? value.negate() : value;
+        return OK;
+    }
+
+    /**
+     * Parses the next token as a decimal of any size and precision, in the format accepted by {@link BigDecimal#BigDecimal(String)}, and stores it in {@link #bigDecimalValue}.
+     * @param maxLength The most characters the token may have. Longer tokens are not read into the buffer in full, and are left to be skipped.
+     * @return {@link #OK}, {@link #MISMATCH}, {@link #OVERFLOW} if the token is too long, or {@link #END_OF_INPUT}
+     */
+    int scanBigDecimal(int maxLength) {
+        int status = findToken(maxLength);
+        if (status != OK) {
+            return status;
+        }
+        int i = tokenStart;
+        int end = tokenEnd;
+        boolean isNegative = buffer[i] == '-';
+        if (isNegative || buffer[i] == '+') {
+            i++;
+        }
+        int integerStart = i;
+        i = skipDecimalDigits(i, end);
+        int integerEnd = i;
+        int fractionStart = i;
+        if (i < end && buffer[i] == '.') {
+            fractionStart = ++i;
+            i = skipDecimalDigits(i, end);
+        }
+        int fractionEnd = i;
+        if (integerStart == integerEnd && fractionStart == fractionEnd) {
+            return MISMATCH;
+        }
+
+        long exponent10 = 0;
+        if (i < end && (buffer[i] == 'e' || buffer[i] == 'E')) {
+            i++;
+            boolean negativeExponent = i < end && buffer[i] == '-';
+            if (i < end && (negativeExponent || buffer[i] == '+')) {
+                i++;
+            }
+            int exponentStart = i;
+            for (; i < end; i++) {
+                int digit = Character.digit(buffer[i], 10);
+                if (digit < 0) {
+                    return MISMATCH;
+                }
+                // Anything this large is out of range anyway, so it stops growing rather than overflowing
+                exponent10 = Math.min(exponent10 * 10 + digit, 1L << 40);
+            }
+            if (i == exponentStart) {
+                return MISMATCH;
+            }
+            if (negativeExponent) {
+                exponent10 = -exponent10;
+            }
+        }
+        if (i != end) {
+            return MISMATCH;
+        }
+        long scale = (fractionEnd - fractionStart) - exponent10;
+        if (scale < Integer.MIN_VALUE || scale > Integer.MAX_VALUE) {
+            return MISMATCH;
+        }
+
+        BigInteger unscaled;
+        if (fractionStart == fractionEnd) {
+            unscaled = BigNumbers.parseDigits(buffer, integerStart, integerEnd, 10);
+        } else if (integerStart == integerEnd) {
+            unscaled = BigNumbers.parseDigits(buffer, fractionStart, fractionEnd, 10);
+        } else {
+            unscaled = BigNumbers.parseDigits(buffer, integerStart, integerEnd, 10)
+                    .multiply(BigInteger.TEN.pow(fractionEnd - fractionStart))
+                    .add(BigNumbers.parseDigits(buffer, fractionStart, fractionEnd, 10));
+        }
+        bigDecimalValue = new BigDecimal(isNegative ? unscaled.negate() : unscaled, (int) scale);
+        return OK;
+    }
+
+    private int skipDecimalDigits(int i, int end) {
+        while (i < end && (buffer[i] >= '0' && buffer[i] <= '9' || Character.digit(buffer[i], 10) >= 0)) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Like {@link #hasToken}, but stops reading once the token is longer than the given length.
+     * @return {@link #OK}, {@link #OVERFLOW} if the token is too long, in which case it is not found, or {@link #END_OF_INPUT}
+     */
+    private int findToken(int maxLength) {
+        if (hasToken) {
+            return tokenEnd - tokenStart > maxLength ? OVERFLOW : OK;
+        }
+        if (!skipWhitespace()) {
+            return END_OF_INPUT;
+        }
+        tokenStart = position;
+        tokenEnd = position;
+        while (true) {
+            while (tokenEnd < limit) {
+                if (isWhitespace(buffer[tokenEnd])) {
+                    hasToken = true;
+                    return OK;
+                }
+                if (++tokenEnd - tokenStart > maxLength) {
+                    return OVERFLOW;
+                }
+            }
+            if (!fill()) {
+                if (timedOut) {
+                    return END_OF_INPUT;
+                }
+                hasToken = true;
+                return OK;
+            }
+        }
+    }
+
+    /**
+     * Parses the next token as an integer in the given radix and stores it in {@link #longValue}.
+     * @return {@link #OK}, {@link #MISMATCH} if the token is not an integer, {@link #OVERFLOW} if it is outside of [min, max], or {@link #END_OF_INPUT}
+     */
+    int scanLong(int radix, long min, long max) {
+        if (!hasToken && radix == 10) {
+            int status = scanShortDecimalLong(min, max);
+            if (status >= 0) {
+                return status;
+            }
+        }
+        if (!hasToken()) {
+            return END_OF_INPUT;
+        }
+        char[] chars = buffer;
+        int i = tokenStart;
+        int end = tokenEnd;
+        boolean isNegative = false;
+        char first = chars[i];
+        if (first == '-' || first == '+') {
+            isNegative = first == '-';
+            i++;
+        }
+        if (i == end) {
+            return MISMATCH;
+        }
+
+        // Accumulated negatively, as in Long.parseLong, so that Long.MIN_VALUE does not overflow
+        long bound = isNegative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multiplyBound = bound / radix;
+        long result = 0;
+        boolean overflow = false;
+        for (; i < end; i++) {
+            char c = chars[i];
+            int digit = radix == 10 && c >= '0' && c <= '9' ? c - '0' : Character.digit(c, radix);
+            if (digit < 0) {
+                return MISMATCH;
+            }
+            if (!overflow) {
+                if (result < multiplyBound) {
+                    overflow = true;
+                } else {
+                    result *= radix;
+                    if (result < bound + digit) {
+                        overflow = true;
+                    } else {
+                        result -= digit;
+                    }
+                }
+            }
+        }
+
+        long value = isNegative ? result : -result;
+        if (overflow || value < min || value > max) {
+            return OVERFLOW;
+        }
+        longValue = value;
+        return OK;
+    }
+
+    /**
+     * Finds and parses the next token in a single pass, for the common case of a decimal integer of up to 18 digits which is already buffered.
+     * @return The status, or -1 if the token has to be parsed by {@link #scanLong} instead
+     */
+    private int scanShortDecimalLong(long min, long max) {
+        if (!skipWhitespace()) {
+            return END_OF_INPUT;
+        }
+        char[] chars = buffer;
+        int i = position;
+        int end = limit;
+        boolean isNegative = false;
+        char first = chars[i];
+        if (first == '-' || first == '+') {
+            isNegative = first == '-';
+            i++;
+        }
+        int digitsStart = i;
+        long result = 0;
+        while (i < end) {
+            int digit = chars[i] - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            result = result * 10 + digit;
+            i++;
+        }
+        // The token may continue past the buffered input, and 18 digits cannot overflow a long
+        if (i == end || i == digitsStart || i - digitsStart > 18 || !isWhitespace(chars[i])) {
+            return -1;
+        }
+        hasToken = true;
+        tokenStart = position;
+        tokenEnd = i;
+        long value = isNegative ? -result : result;
+        if (value < min || value > max) {
+            return OVERFLOW;
+        }
+        longValue = value;
+        return OK;
+    }
+
+    /**
+     * Parses the next token as a decimal and stores it in {@link #doubleValue}.
+     * @return {@link #OK}, {@link #MISMATCH} or {@link #END_OF_INPUT}
+     */
+    int scanDouble() {
+        int status = scanDecimal();
+        if (status != OK) {
+            return status;
+        }
+        if (!exact) {
+            if (!special) {
+                doubleValue = Double.parseDouble(new String(buffer, tokenStart, tokenEnd - tokenStart));
+            }
+        } else if (significand == 0) {
+            doubleValue = negative ? -0.0d : 0.0d;
+        } else if (significand < MAX_EXACT_DOUBLE && exponent >= -22 && exponent <= 22) {
+            // Both operands are exact doubles, so a single rounded operation gives the correctly rounded result
+            double value = significand;
+            value = exponent < 0 ? value / DOUBLE_POWERS_OF_TEN[-exponent] : value * DOUBLE_POWERS_OF_TEN[exponent];
+            doubleValue = negative ? -value : value;
+        } else {
+            doubleValue = Double.parseDouble(new String(buffer, tokenStart, tokenEnd - tokenStart));
+        }
+        return OK;
+    }
+
+    /**
+     * Parses the next token as a decimal and stores it in {@link #floatValue}.
+     * @return {@link #OK}, {@link #MISMATCH} or {@link #END_OF_INPUT}
+     */
+    int scanFloat() {
+        int status = scanDecimal();
+        if (status != OK) {
+            return status;
+        }
+        if (!exact) {
+            floatValue = special ? (float) doubleValue : Float.parseFloat(new String(buffer, tokenStart, tokenEnd - tokenStart));
+        } else if (significand == 0) {
+            floatValue = negative ? -0.0f : 0.0f;
+        } else if (significand < MAX_EXACT_FLOAT && exponent >= -10 && exponent <= 10) {
+            float value = significand;
+            value = exponent < 0 ? value / FLOAT_POWERS_OF_TEN[-exponent] : value * FLOAT_POWERS_OF_TEN[exponent];
+            floatValue = negative ? -value : value;
+        } else {
+            floatValue = Float.parseFloat(new String(buffer, tokenStart, tokenEnd - tokenStart));
+        }
+        return OK;
+    }
+
+    /**
+     * Validates the next token as [+-]digits[.digits][(e|E)[+-]digits], NaN or Infinity.
+     * Up to 19 significant digits are accumulated into {@link #significand} with a decimal {@link #exponent}.
+     * NaN and Infinity are stored directly in {@link #doubleValue} with {@link #special} set.
+     */
+    private int scanDecimal() {
+        if (!hasToken()) {
+            return END_OF_INPUT;
+        }
+        char[] chars = buffer;
+        int i = tokenStart;
+        int end = tokenEnd;
+        boolean isNegative = false;
+        char first = chars[i];
+        if (first == '-' || first == '+') {
+            isNegative = first == '-';
+            i++;
+        }
+
+        long digits = 0;
+        int digitCount = 0;
+        int exponent10 = 0;
+        boolean anyDigit = false;
+        boolean truncated = false;
+        for (; i < end; i++) {
+            int digit = chars[i] - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            anyDigit = true;
+            if (digitCount < MAX_SIGNIFICANT_DIGITS) {
+                if (digits != 0 || digit != 0) {
+                    digits = digits * 10 + digit;
+                    digitCount++;
+                }
+            } else {
+                exponent10++;
+                truncated |= digit != 0;
+            }
+        }
+        if (i < end && chars[i] == '.') {
+            for (i++; i < end; i++) {
+                int digit = chars[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                anyDigit = true;
+                if (digitCount < MAX_SIGNIFICANT_DIGITS) {
+                    if (digits != 0 || digit != 0) {
+                        digits = digits * 10 + digit;
+                        digitCount++;
+                    }
+                    exponent10--;
+                } else {
+                    truncated |= digit != 0;
+                }
+            }
+        }
+        if (!anyDigit) {
+            return scanSpecialDecimal(i, end, isNegative);
+        }
+        if (i < end && (chars[i] == 'e' || chars[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (chars[i] == '-' || chars[i] == '+')) {
+                negativeExponent = chars[i] == '-';
+                i++;
+            }
+            if (i == end) {
+                return MISMATCH;
+            }
+            int explicitExponent = 0;
+            for (; i < end; i++) {
+                int digit = chars[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    return MISMATCH;
+                }
+                // Anything this large is already zero or infinity, so there is no need to keep counting
+                if (explicitExponent < 100_000) {
+                    explicitExponent = explicitExponent * 10 + digit;
+                }
+            }
+            exponent10 += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+        if (i != end) {
+            return MISMATCH;
+        }
+
+        negative = isNegative;
+        significand = digits;
+        exponent = exponent10;
+        // Too many significant digits cannot be rounded correctly here, so they take the slow path
+        exact = !truncated;
+        special = false;
+        return OK;
+    }
+
+    private int scanSpecialDecimal(int i, int end, boolean isNegative) {
+        if (regionEquals(i, end, "Infinity")) {
+            doubleValue = isNegative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        } else if (i == tokenStart && regionEquals(i, end, "NaN")) {
+            doubleValue = Double.NaN;
+        } else {
+            return MISMATCH;
+        }
+        exact = false;
+        special = true;
+        return OK;
+    }
+
+    private boolean regionEquals(int start, int end, String expected) {
+        if (end - start != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (buffer[start + i] != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads the rest of the current line, consuming its line terminator.
+     * @return The line without its terminator, or null at the end of input
+     */
+    String readLine() {
+        int end = findLineEnd();
+        if (end < 0) {
+            return null;
+        }
+        String line = new String(buffer, position, end - position);
+        consumeLine(end);
+        return line;
+    }
+
+    /**
+     * Skips the rest of the current line, including its line terminator.
+     */
+    void skipLine() {
+        if (hasDeadline) {
+            // Part of a line read before the deadline must be left in place, so it is found in full before anything is consumed
+            int end = findLineEnd();
+            if (end >= 0) {
+                consumeLine(end);
+            }
+            return;
+        }
+        hasToken = false;
+        if (skipLineFeed) {
+            if (position == limit && !fill()) {
+                return;
+            }
+            if (buffer[position] == '\n') {
+                position++;
+            }
+            skipLineFeed = false;
+        }
+        // Unlike reading a line, skipping one consumes it as it goes, so even a very long line never has to fit in the buffer
+        while (true) {
+            while (position < limit) {
+                if (isLineTerminator(buffer[position])) {
+                    consumeLine(position);
+                    return;
+                }
+                position++;
+            }
+            if (!fill()) {
+                lineHasToken = false;
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return The index of the terminator of the current line (or the limit if input ends first), or -1 if there is no more input
+     */
+    private int findLineEnd() {
+        hasToken = false;
+        if (skipLineFeed) {
+            if (position == limit && !fill()) {
+                return -1;
+            }
+            if (buffer[position] == '\n') {
+                position++;
+            }
+            skipLineFeed = false;
+        }
+        scan = position;
+        while (true) {
+            while (scan < limit) {
+                if (isLineTerminator(buffer[scan])) {
+                    return scan;
+                }
+                scan++;
+            }
+            if (!fill()) {
+                return scan > position && !timedOut ? scan : -1;
+            }
+        }
+    }
+
+    private void consumeLine(int end) {
+        lineHasToken = false;
+        if (end == limit) {
+            position = end;
+            return;
+        }
+        char terminator = buffer[end];
+        position = end + 1;
+        if (terminator == '\r') {
+            // Waiting for a possible '\n' could block, so it is skipped lazily instead
+            if (position < limit) {
+                if (buffer[position] == '\n') {
+                    position++;
+                }
+            } else {
+                skipLineFeed = true;
+            }
+        }
+    }
+
+    /**
+     * The same as {@link Character#isWhitespace}, with the ASCII cases checked first.
+     */
+    private static boolean isWhitespace(char c) {
+        if (c <= ' ') {
+            return c == ' ' || (c >= '\t' && c <= '\r') || c >= '\u001C';
+        }
+        return c >= '\u0080' && Character.isWhitespace(c);
+    }
+
+    private static boolean isLineTerminator(char c) {
+        if (c > '\r') {
+            return c >= '\u0085' && (c == '\u0085' || c == '\u2028' || c == '\u2029');
+        }
+        return c == '\n' || c == '\r';
+    }
+
+    /**
+     * Skips whitespace, reading more input if necessary.
+     * @return Whether there is any non-whitespace input left
+     */
+    private boolean skipWhitespace() {
+        skipLineFeed = false;
+        while (true) {
+            while (position < limit) {
+                char c = buffer[position];
+                if (!isWhitespace(c)) {
+                    return true;
+                }
+                if (isLineTerminator(c)) {
+                    lineHasToken = false;
+                }
+                position++;
+            }
+            if (!fill()) {
+                return false;
+            }
+        }
+    }
+
+    private void discard(int count) {
+        int lastTerminator = -1;
+        for (int i = 0; i < count; i++) {
+            char c = buffer[i];
+            if (isLineTerminator(c)) {
+                if (!(c == '\n' && discardedCarriageReturn)) {
+                    discardedLines++;
+                }
+                lastTerminator = i;
+            }
+            discardedCarriageReturn = c == '\r';
+        }
+        discardedColumn = lastTerminator < 0 ? discardedColumn + count : count - lastTerminator - 1;
+    }
+
+    /**
+     * Waits until the deadline for the source to have input.
+     * @return Whether reading will not block
+     */
+    private boolean awaitInput() {
+        try {
+            return waiter.await(deadline - System.nanoTime());
+        } catch (IOException e) {
+            // The read reports the problem
+            return true;
+        }
+    }
+
+    /**
+     * Reads more input into the buffer. Everything from {@link #position} onwards is kept, moving it to the front of the buffer or growing the buffer if it is already full.
+     * @return Whether any more input was read
+     */
+    private boolean fill() {
+        timedOut = false;
+        if (endOfInput) {
+            return false;
+        }
+        int shift = position;
+        if (shift > 0) {
+            if (trackPosition) {
+                discard(shift);
+            }
+            if (recorded != null) {
+                recorded.append(buffer, mark, shift - mark);
+                mark = 0;
+            }
+            System.arraycopy(buffer, shift, buffer, 0, limit - shift);
+            position = 0;
+            limit -= shift;
+            tokenStart -= shift;
+            tokenEnd -= shift;
+            scan -= shift;
+        }
+        if (limit == buffer.length) {
+            char[] grown = new char[buffer.length * 2];
+            System.arraycopy(buffer, 0, grown, 0, limit);
+            buffer = grown;
+            view = CharBuffer.wrap(buffer);
+        }
+
+        beforeRead.run();
+        if (hasDeadline && waiter != null && !awaitInput()) {
+            timedOut = true;
+            return false;
+        }
+        view.limit(buffer.length).position(limit);
+        int read;
+        try {
+            do {
+                read = source.read(view);
+            } while (read == 0);
+        } catch (IOException e) {
+            ioException = e;
+            read = -1;
+        }
+        if (read < 0) {
+            endOfInput = true;
+            return false;
+        }
+        limit += read;
+        return true;
+    }
+
+    /**
+     * Waits for a source to have input without reading it.
+     */
+    interface InputWaiter {
+        /**
+         * @param nanos How long to wait for, which may be zero or negative to only check
+         * @return Whether input may be available, in which case reading from the source should not block for long
+         * @throws IOException If the source cannot be waited on
+         */
+        boolean await(long nanos) throws IOException;
+    }
+}
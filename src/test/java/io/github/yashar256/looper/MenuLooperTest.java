@@ -1,35 +1,636 @@
 package io.github.yashar256.looper;
 
-import static io.github.yashar256.looper.ScannerTestCase.createNewTest;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.channels.Channels;
+import java.nio.channels.Pipe;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 public class MenuLooperTest {
+    private static final String NL = System.lineSeparator();
+
     @Test
     public void testCustomScannerMethods() {
-        createNewTest("foo", "foo", s -> s.next("Next word"));
-        createNewTest("0", new BigInteger("0"), s -> s.nextBigInteger("Big Integer"));
-        createNewTest("0.02", new BigDecimal("0.02"), s -> s.nextBigDecimal("Big Decimal"));
-        createNewTest("110", new BigInteger("10"), s -> s.nextBigInteger("Big Decimal, radix 2", 2));
-        createNewTest("t", true, s -> s.nextBoolean("Boolean, t"));
-        createNewTest("T", true, s -> s.nextBoolean("Boolean, T"));
-        createNewTest("f", false, s -> s.nextBoolean("Boolean, f"));
-        createNewTest("F", false, s -> s.nextBoolean("Boolean, F"));
-        createNewTest("f", true, s -> s.nextBoolean("Next boolean, with 1 wrong input"));
-        createNewTest("4", (byte) 4, s -> s.nextByte("Byte"));
-        createNewTest("11", (byte) 0b11, s -> s.nextByte("Byte radix 2", 2));
-        createNewTest("0.50", 0.50d, s -> s.nextDouble("Double"));
-        createNewTest("0.50", 0.50f, s -> s.nextFloat("Float"));
-        createNewTest("0.50", 0.50f, s -> s.nextDouble("Float"));
-        createNewTest("49", 49, s -> s.nextInt("Int"));
-        createNewTest("11101", 0b11101, s -> s.nextInt("Int radix 2", 2));
-        createNewTest("this is a line", "this is a line", s -> s.nextLine("Next line"));
-        createNewTest("2023", 2023L, s -> s.nextLong("Long"));
-        createNewTest("11101", 0b11101L, s -> s.nextLong("Long radix 2"));
-        createNewTest("34", (short) 34, s -> s.nextShort("Short"));
-        createNewTest("11101", (short) 0b11101, s -> s.nextShort("Short, radix 2", 2));
+        ScannerTestCase cases = new ScannerTestCase();
+        cases.createNewTest("foo", "foo", s -> s.next("Next word"));
+        cases.createNewTest("0", new BigInteger("0"), s -> s.nextBigInteger("Big Integer"));
+        cases.createNewTest("0.02", new BigDecimal("0.02"), s -> s.nextBigDecimal("Big Decimal"));
+        cases.createNewTest("110", new BigInteger("6"), s -> s.nextBigInteger("Big Decimal, radix 2", 2));
+        cases.createNewTest("t", true, s -> s.nextBoolean("Boolean, t"));
+        cases.createNewTest("T", true, s -> s.nextBoolean("Boolean, T"));
+        cases.createNewTest("f", false, s -> s.nextBoolean("Boolean, f"));
+        cases.createNewTest("F", false, s -> s.nextBoolean("Boolean, F"));
+        cases.createNewTest("maybe\nt", true, s -> s.nextBoolean("Next boolean, with 1 wrong input"));
+        cases.createNewTest("4", (byte) 4, s -> s.nextByte("Byte"));
+        cases.createNewTest("11", (byte) 0b11, s -> s.nextByte("Byte radix 2", 2));
+        cases.createNewTest("0.50", 0.50d, s -> s.nextDouble("Double"));
+        cases.createNewTest("0.50", 0.50f, s -> s.nextFloat("Float"));
+        cases.createNewTest("5e-1", 0.50f, s -> s.nextFloat("Float, exponent"));
+        cases.createNewTest("49", 49, s -> s.nextInt("Int"));
+        cases.createNewTest("11101", 0b11101, s -> s.nextInt("Int radix 2", 2));
+        cases.createNewTest("this is a line", "this is a line", s -> s.nextLine("Next line"));
+        cases.createNewTest("2023", 2023L, s -> s.nextLong("Long"));
+        cases.createNewTest("11101", 0b11101L, s -> s.nextLong("Long radix 2", 2));
+        cases.createNewTest("34", (short) 34, s -> s.nextShort("Short"));
+        cases.createNewTest("11101", (short) 0b11101, s -> s.nextShort("Short, radix 2", 2));
+        cases.runAllTests();
+    }
+
+    @Test
+    public void testPromptsStayInOrderWithSystemOut() {
+        InputStream originalIn = System.in;
+        PrintStream originalOut = System.out;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            // The whole input is buffered at once, as with piped input, so answers are read without waiting
+            System.setIn(new ByteArrayInputStream("1\n5\n2\n".getBytes()));
+            System.setOut(new PrintStream(bytes, true));
+            MenuLooper menu = new MenuLooper();
+            menu.addOption("Double", s -> {
+                int n = s.nextInt("Number");
+                System.out.println("Result " + n * 2);
+            });
+
+            menu.run();
+        } finally {
+            System.setIn(originalIn);
+            System.setOut(originalOut);
+        }
+
+        String whole = "Select an option from the list bellow" + NL + "[1] - Double" + NL + "[2] - Exit" + NL;
+        assertEquals(whole + "Number" + NL + "Result 10" + NL + whole, bytes.toString());
+    }
+
+    @Test
+    public void testInMemoryScanner() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        MenuLooper.Scanner scanner = new MenuLooper.Scanner("oops\n42\nhello world\n", new MenuLooper.Output(bytes));
+
+        assertEquals(42, scanner.nextInt("Int"));
+        assertEquals("hello world", scanner.nextLine());
+        scanner.getOutput().flush();
+        assertEquals("Int" + NL + "Please enter a valid integer and try again" + NL, bytes.toString());
+    }
+
+    @Test
+    public void testTryNextMethods() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        MenuLooper.Scanner scanner = new MenuLooper.Scanner("12 x 300 ff 1.5 yes 3000000000", new MenuLooper.Output(bytes));
+
+        assertEquals(12, scanner.tryNextInt().intValue());
+        ParseResult mismatch = scanner.tryNextInt();
+        assertEquals(ParseResult.Status.MISMATCH, mismatch.getStatus());
+        assertThrows(IllegalStateException.class, mismatch::intValue);
+        assertEquals("x", scanner.next());
+        assertEquals(ParseResult.Status.OVERFLOW, scanner.tryNextByte().getStatus());
+        assertEquals(300, scanner.tryNextShort().shortValue());
+        assertEquals(255, scanner.tryNextInt(16).intValue());
+        assertEquals(1.5, scanner.tryNextDouble().doubleValue());
+        assertTrue(scanner.tryNextBoolean().booleanValue());
+        assertEquals(ParseResult.Status.OVERFLOW, scanner.tryNextInt().getStatus());
+        assertEquals(3_000_000_000L, scanner.tryNextLong().longValue());
+        assertEquals(ParseResult.Status.END_OF_INPUT, scanner.tryNextFloat().getStatus());
+        scanner.getOutput().flush();
+        assertEquals("", bytes.toString());
+
+        // Rejected input is left for nextLine, whether or not a token was read before it
+        MenuLooper.Scanner rejected = new MenuLooper.Scanner("oops\n-12345\n7\nmaybe\n", new MenuLooper.Output(bytes));
+        assertEquals(ParseResult.Status.MISMATCH, rejected.tryNextInt().getStatus());
+        assertEquals("oops", rejected.nextLine());
+        assertEquals(-12345, rejected.tryNextInt().intValue());
+        assertEquals(ParseResult.Status.MISMATCH, rejected.tryNextBoolean().getStatus());
+        assertEquals("7", rejected.nextLine());
+        assertEquals(ParseResult.Status.MISMATCH, rejected.tryNextDouble().getStatus());
+        assertEquals("maybe", rejected.nextLine());
+    }
+
+    @Test
+    public void testBulkReaders() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        MenuLooper.Scanner scanner = new MenuLooper.Scanner("1 2\n3 ff 10\n1.5 x\n2.5 3.5\n"
+                + "4 5\r\n6\r\n\r\n7 oops 8\n9\n  \n\nlast\n1 10\n\n", new MenuLooper.Output(bytes));
+
+        assertArrayEquals(new int[] {1, 2, 3}, scanner.nextInts("Ints", 3));
+        assertArrayEquals(new long[] {255, 16}, scanner.nextLongs(2, 16));
+        assertArrayEquals(new double[] {1.5, 2.5, 3.5}, scanner.nextDoubles(3));
+        assertArrayEquals(new int[0], scanner.nextInts(0));
+
+        assertArrayEquals(new int[] {4, 5, 6}, scanner.nextIntBlock());
+        assertArrayEquals(new long[] {9}, scanner.nextLongBlock("Longs"));
+        assertArrayEquals(new double[0], scanner.nextDoubleBlock());
+        assertEquals("last", scanner.nextLine());
+        assertArrayEquals(new int[] {1, 2}, scanner.nextIntBlock(2));
+        assertArrayEquals(new int[0], scanner.nextIntBlock());
+
+        scanner.getOutput().flush();
+        String retry = "Please enter a valid %s and try again" + NL;
+        assertEquals("Ints" + NL + String.format(retry, "decimal") + "Longs" + NL + String.format(retry, "integer"), bytes.toString());
+        assertThrows(IllegalArgumentException.class, () -> scanner.nextLongs(-1));
+    }
+
+    @Test
+    public void testStreams() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        MenuLooper.Scanner scanner = new MenuLooper.Scanner("1 2 x\n3 -1 4\n5000000000 2.5 0 a b done c\nfirst\nsecond\n\nthird\n",
+                new MenuLooper.Output(bytes));
+
+        assertEquals(6, scanner.ints(-1).sum());
+        assertEquals(4, scanner.nextInt());
+        assertEquals(5_000_000_000L, scanner.longs().limit(1).sum());
+        assertArrayEquals(new double[] {2.5}, scanner.doubles(0).toArray());
+        assertEquals(Arrays.asList("a", "b"), scanner.tokens("done").collect(Collectors.toList()));
+        assertEquals(Arrays.asList("first", "second"), scanner.lines("").collect(Collectors.toList()));
+        assertEquals(Arrays.asList("third"), scanner.lines().collect(Collectors.toList()));
+        assertEquals(0, scanner.ints().count());
+
+        scanner.getOutput().flush();
+        assertEquals("Please enter a valid integer and try again" + NL, bytes.toString());
+    }
+
+    @Test
+    public void testStreamsAreLazy() {
+        // The input never ends, so the stream can only finish if it reads no more than it needs
+        Reader endless = new Reader() {
+            @Override
+            public int read(char[] buffer, int offset, int length) {
+                int pairs = length / 2;
+                for (int i = 0; i < pairs; i++) {
+                    buffer[offset + 2 * i] = '7';
+                    buffer[offset + 2 * i + 1] = '\n';
+                }
+                return pairs * 2;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        MenuLooper.Scanner scanner = new MenuLooper.Scanner(endless, new MenuLooper.Output(new ByteArrayOutputStream()));
+        assertEquals(7_000_000, scanner.ints().limit(1_000_000).sum());
+    }
+
+    @Test
+    public void testEndOfInput() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        List<Integer> list = new ArrayList<>();
+        MenuLooper menu = new MenuLooper("1 4\n1", new MenuLooper.Output(bytes));
+        menu.addOption("Add", s -> list.add(s.nextInt("Number")));
+
+        menu.run();
+        assertEquals(1, list.size());
+
+        MenuLooper throwing = new MenuLooper("", new MenuLooper.Output(bytes));
+        throwing.setEndOfInputPolicy(MenuLooper.EndOfInputPolicy.THROW);
+        assertThrows(NoSuchElementException.class, throwing::run);
+
+        MenuLooper failing = new MenuLooper("1", new MenuLooper.Output(bytes));
+        failing.addOption("Fail", () -> {
+            throw new NoSuchElementException();
+        });
+        assertThrows(NoSuchElementException.class, failing::run);
+    }
+
+    @Test
+    public void testChannelAndStreamSources() {
+        MenuLooper.Output out = new MenuLooper.Output(new ByteArrayOutputStream());
+        byte[] input = ("7" + NL).getBytes();
+
+        assertEquals(7, new MenuLooper.Scanner(new ByteArrayInputStream(input), out).nextInt());
+        assertEquals(7, new MenuLooper.Scanner(Channels.newChannel(new ByteArrayInputStream(input)), out).nextInt());
+    }
+
+    @Test
+    public void testTimeouts() throws IOException {
+        MenuLooper.Output out = new MenuLooper.Output(new ByteArrayOutputStream(), StandardCharsets.UTF_8);
+
+        // Selectable channels are waited on with a selector
+        Pipe pipe = Pipe.open();
+        MenuLooper.Scanner selectable = new MenuLooper.Scanner(pipe.source(), out);
+        assertEquals(ParseResult.Status.TIMEOUT, selectable.tryNextInt(Duration.ofMillis(50)).getStatus());
+        pipe.sink().write(StandardCharsets.UTF_8.encode("oops\n42\nhello\n"));
+        assertEquals(OptionalInt.of(42), selectable.nextInt("Int", Duration.ofSeconds(10)));
+        assertEquals(Optional.of("hello"), selectable.nextLine("Line", Duration.ofSeconds(10)));
+        assertEquals(OptionalLong.empty(), selectable.nextLong("Long", Duration.ofMillis(50)));
+        // A word without anything after it yet is left for later rather than cut short
+        pipe.sink().write(StandardCharsets.UTF_8.encode("12"));
+        assertEquals(Optional.empty(), selectable.nextLine("Line", Duration.ofMillis(50)));
+        pipe.sink().write(StandardCharsets.UTF_8.encode("34\n"));
+        assertEquals(1234, selectable.nextInt());
+
+        // Streams are polled
+        PipedOutputStream typed = new PipedOutputStream();
+        MenuLooper.Scanner polled = new MenuLooper.Scanner(new PipedInputStream(typed), out);
+        assertEquals(OptionalDouble.empty(), polled.nextDouble("Double", Duration.ofMillis(50)));
+        typed.write("0.5\n".getBytes(StandardCharsets.UTF_8));
+        assertEquals(OptionalDouble.of(0.5), polled.nextDouble("Double", Duration.ofSeconds(10)));
+
+        // Text in memory never blocks, so it ends rather than timing out
+        MenuLooper.Scanner text = new MenuLooper.Scanner("", out);
+        assertEquals(ParseResult.Status.END_OF_INPUT, text.tryNextInt(Duration.ofSeconds(10)).getStatus());
+    }
+
+    @Test
+    public void testIdleTimeout() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Pipe pipe = Pipe.open();
+        AtomicInteger locks = new AtomicInteger();
+        MenuLooper menu = new MenuLooper(pipe.source(), new MenuLooper.Output(bytes));
+        // The fallback runs every time the menu is left alone, until the second time selects exit
+        menu.addOption("Lock", () -> {
+            if (locks.incrementAndGet() == 2) {
+                try {
+                    pipe.sink().write(StandardCharsets.UTF_8.encode("exit\n"));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+        menu.setIdleTimeout(Duration.ofMillis(50), "Lock");
+
+        menu.run();
+
+        assertEquals(2, locks.get());
+        String whole = "Select an option from the list bellow" + NL + "[1] - Lock" + NL + "[2] - Exit" + NL;
+        assertEquals(whole + whole + whole, bytes.toString());
+
+        // Without a fallback option the menu is left
+        bytes.reset();
+        menu.setIdleTimeout(Duration.ofMillis(50), null);
+        menu.run();
+        assertEquals(2, locks.get());
+        assertEquals(whole, bytes.toString());
+    }
+
+    @Test
+    public void testMenuLoopersAreIsolated() {
+        ByteArrayOutputStream firstBytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream secondBytes = new ByteArrayOutputStream();
+        List<String> list = new ArrayList<>();
+
+        MenuLooper first = new MenuLooper("1\nfoo\n2\n", new MenuLooper.Output(firstBytes));
+        first.addOption("Add", s -> list.add(s.nextLine("Element")));
+        MenuLooper second = new MenuLooper("1\n2\n", new MenuLooper.Output(secondBytes));
+        second.addOption("Print", s -> s.getOutput().println(String.join(",", list)));
+
+        first.run();
+        second.run();
+
+        String menu = "Select an option from the list bellow" + NL + "[1] - Add" + NL + "[2] - Exit" + NL;
+        assertEquals(menu + "Element" + NL + menu, firstBytes.toString());
+        assertTrue(secondBytes.toString().contains("foo" + NL));
+    }
+
+    @Test
+    public void testRunScript(@TempDir Path directory) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        List<Integer> list = new ArrayList<>();
+        MenuLooper menu = new MenuLooper("", new MenuLooper.Output(bytes));
+        menu.addOption("Add", s -> list.add(s.nextInt("Number")));
+        menu.addOption("Clear", list::clear);
+
+        Path script = directory.resolve("script.txt");
+        Files.write(script, "1 5\n1 6\n2\n1 7\n".getBytes());
+        menu.runScript(script);
+        assertEquals(1, list.size());
+        assertEquals(7, list.get(0));
+        assertEquals("", bytes.toString());
+
+        Files.write(script, "1 5\n3\n1 6\n".getBytes());
+        menu.runScript(script);
+        assertEquals(5, list.get(list.size() - 1));
+
+        Files.write(script, "1 5\n2\n  1 five\n".getBytes());
+        ScriptInputException mismatch = assertThrows(ScriptInputException.class, () -> menu.runScript(script));
+        assertEquals(3, mismatch.getLine());
+        assertEquals(5, mismatch.getColumn());
+
+        Files.write(script, "1 5\r\n\r\n4\r\n".getBytes());
+        ScriptInputException missing = assertThrows(ScriptInputException.class, () -> menu.runScript(script));
+        assertEquals(3, missing.getLine());
+        assertEquals(1, missing.getColumn());
+
+        Files.write(script, "1".getBytes());
+        assertThrows(ScriptInputException.class, () -> menu.runScript(script));
+
+        // Running a script leaves a menu without a scanner to create one from System.in when it is next run
+        InputStream originalIn = System.in;
+        PrintStream originalOut = System.out;
+        List<String> names = new ArrayList<>();
+        try {
+            System.setOut(new PrintStream(new ByteArrayOutputStream(), true));
+            MenuLooper standard = new MenuLooper();
+            standard.addOption("Name", s -> names.add(s.next("Name")));
+            Files.write(script, "1 script\n".getBytes());
+            standard.runScript(script);
+            System.setIn(new ByteArrayInputStream("1 typed\n2\n".getBytes()));
+            standard.run();
+        } finally {
+            System.setIn(originalIn);
+            System.setOut(originalOut);
+        }
+        assertEquals(Arrays.asList("script", "typed"), names);
+    }
+
+    @Test
+    public void testRunArguments() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        List<Integer> list = new ArrayList<>();
+        MenuLooper menu = new MenuLooper("", new MenuLooper.Output(bytes));
+        menu.addOption("Add", s -> list.add(s.nextInt("Number")));
+        menu.addOption("Print", s -> s.getOutput().println(list.toString()));
+
+        menu.run("Add", "5", "add", "6", "2");
+        assertEquals(Arrays.asList(5, 6), list);
+        // Neither the menu nor the prompts are displayed
+        assertEquals("[5, 6]" + NL, bytes.toString());
+
+        ScriptInputException mismatch = assertThrows(ScriptInputException.class, () -> menu.run("1", "five"));
+        assertEquals(2, mismatch.getLine());
+        assertThrows(ScriptInputException.class, () -> menu.run("Add"));
+        assertThrows(ScriptInputException.class, () -> menu.run("Remove"));
+    }
+
+    @Test
+    public void testDynamicOptions() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        MenuLooper menu = new MenuLooper("1\n2\n1\n3\n1\n2\n3\n", new MenuLooper.Output(bytes));
+        menu.addOption("Add", () -> menu.addOption("Remove", () -> menu.removeOption("Remove")));
+
+        menu.run();
+        menu.run();
+
+        String header = "Select an option from the list bellow" + NL;
+        String small = header + "[1] - Add" + NL + "[2] - Exit" + NL;
+        String big = header + "[1] - Add" + NL + "[2] - Remove" + NL + "[3] - Exit" + NL;
+        String withTwo = header + "[1] - Add" + NL + "[2] - Remove" + NL + "[3] - Remove" + NL + "[4] - Exit" + NL;
+        assertEquals(small + big + small + big + big + withTwo + big, bytes.toString());
+    }
+
+    @Test
+    public void testSelectingOptionsByName() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        List<String> selected = new ArrayList<>();
+        // A whole name, a unique prefix, an alias, an ambiguous prefix, an unknown name, a name which is also a prefix, then exit by name
+        MenuLooper menu = new MenuLooper("delete\nDESC\nrm\nde\nfoo\nadd\nexit\n", new MenuLooper.Output(bytes));
+        menu.addOption("Delete", () -> selected.add("Delete"));
+        menu.addOption("Describe", () -> selected.add("Describe"));
+        menu.addOption("Add", () -> selected.add("Add"));
+        menu.addOption("Add all", () -> selected.add("Add all"));
+        menu.addAlias("Delete", "rm");
+
+        menu.run();
+
+        assertEquals(Arrays.asList("Delete", "Describe", "Delete", "Add"), selected);
+        assertTrue(bytes.toString().contains("\"de\" could be any of Delete, Describe. Please enter more of its name" + NL));
+        assertTrue(bytes.toString().contains("Could not recognise that option. Please enter an option from the list above" + NL));
+        assertEquals(Arrays.asList("Delete", "Describe"), menu.completeOption("de"));
+        assertEquals(Arrays.asList("Add", "Add all", "Delete", "Describe", "Exit"), menu.completeOption(""));
+        assertThrows(IllegalArgumentException.class, () -> menu.addAlias("Missing", "m"));
+
+        menu.removeOption("Delete");
+        assertEquals(Arrays.asList("Describe"), menu.completeOption("d"));
+        assertEquals(Arrays.asList(), menu.completeOption("rm"));
+    }
+
+    @Test
+    public void testPagination() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        List<Integer> selected = new ArrayList<>();
+        // Past the last page, back one, to the first, before the first, then select an option which is on another page
+        MenuLooper menu = new MenuLooper(">\n>\n>\n<\n#1\n<\n25\nexit\n", new MenuLooper.Output(bytes));
+        for (int i = 1; i <= 25; i++) {
+            int option = i;
+            menu.addOption("Option " + i, () -> selected.add(option));
+        }
+        menu.setPageSize(10);
+
+        menu.run();
+
+        assertEquals(Arrays.asList(25), selected);
+        String header = "Select an option from the list bellow" + NL;
+        String[] pages = new String[3];
+        for (int page = 0; page < 3; page++) {
+            StringBuilder expected = new StringBuilder(header);
+            for (int i = page * 10 + 1; i <= Math.min(25, page * 10 + 10); i++) {
+                expected.append("[").append(i).append("] - Option ").append(i).append(NL);
+            }
+            expected.append("[26] - Exit").append(NL);
+            expected.append("Page ").append(page + 1).append(" of 3, enter > for the next page, < for the previous page or #n to go to page n").append(NL);
+            pages[page] = expected.toString();
+        }
+        assertEquals(pages[0] + pages[1] + pages[2] + pages[2] + pages[1] + pages[0] + pages[0] + pages[0], bytes.toString());
+
+        // Menus which fit on a single page are displayed as usual
+        bytes.reset();
+        MenuLooper small = new MenuLooper("1\n2\n", new MenuLooper.Output(bytes));
+        small.addOption("Only", () -> {});
+        small.setPageSize(10);
+        small.run();
+        String whole = header + "[1] - Only" + NL + "[2] - Exit" + NL;
+        assertEquals(whole + whole, bytes.toString());
+    }
+
+    @Test
+    public void testTypeahead() {
+        for (boolean typeahead : new boolean[] {false, true}) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            List<String> added = new ArrayList<>();
+            // Each read returns one line, as a terminal would
+            Reader typed = new Reader() {
+                private final String[] lines = {"1 foo 1 bar\n", "2\n"};
+                private int line;
+
+                @Override
+                public int read(char[] buffer, int offset, int length) {
+                    if (line == lines.length) {
+                        return -1;
+                    }
+                    String text = lines[line++];
+                    text.getChars(0, text.length(), buffer, offset);
+                    return text.length();
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+            MenuLooper menu = new MenuLooper(new MenuLooper.Scanner(typed, new MenuLooper.Output(bytes)));
+            menu.addOption("Add", scanner -> added.add(scanner.next("Name")));
+            menu.setTypeahead(typeahead);
+
+            menu.run();
+
+            assertEquals(Arrays.asList("foo", "bar"), added);
+            String whole = "Select an option from the list bellow" + NL + "[1] - Add" + NL + "[2] - Exit" + NL;
+            // Only the menu after the typed-ahead line runs out is displayed
+            String expected = typeahead ? whole + whole : whole + "Name" + NL + whole + "Name" + NL + whole;
+            assertEquals(expected, bytes.toString());
+        }
+    }
+
+    @Test
+    public void testCachedOptions() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        List<String> accounts = new ArrayList<>();
+        AtomicInteger reports = new AtomicInteger();
+        MenuLooper menu = new MenuLooper("1\n1\n2\nbob\n1\n3\n1\n4\n", new MenuLooper.Output(bytes));
+        menu.addCachedOption("List", "accounts", out -> {
+            reports.incrementAndGet();
+            out.println(accounts.toString());
+        });
+        menu.addMutatingOption("Add", scanner -> accounts.add(scanner.next("Name")), "accounts");
+        menu.addMutatingOption("Refresh", () -> {}, "other");
+        menu.setCacheSize(1024);
+
+        menu.run();
+
+        // The second listing is remembered, the one after adding is not, and refreshing an unrelated tag changes nothing
+        assertEquals(2, reports.get());
+        assertEquals(2, menu.getCacheHits());
+        assertEquals(2, menu.getCacheMisses());
+        String whole = "Select an option from the list bellow" + NL + "[1] - List" + NL + "[2] - Add" + NL + "[3] - Refresh" + NL + "[4] - Exit" + NL;
+        assertEquals(whole + "[]" + NL + whole + "[]" + NL + whole + "Name" + NL + whole + "[bob]" + NL + whole + whole + "[bob]" + NL + whole, bytes.toString());
+
+        // Output larger than the cache is never remembered
+        menu.setCacheSize(1);
+        menu.invalidate("accounts");
+        menu.run(new MenuLooper.Scanner("1\n1\n4\n", new MenuLooper.Output(new ByteArrayOutputStream())));
+        assertEquals(4, reports.get());
+        assertEquals(4, menu.getCacheMisses());
+    }
+
+    @Test
+    public void testSubmenus() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        AtomicInteger builds = new AtomicInteger();
+        List<String> visited = new ArrayList<>();
+        // Enter the submenu, its submenu, exit to root, enter both again, go back twice and exit
+        MenuLooper menu = new MenuLooper("1\n1\n1\n3\n1\n1\n2\n2\n2\n1\n2\n2\n", new MenuLooper.Output(bytes));
+        menu.addSubmenu("Outer", () -> {
+            builds.incrementAndGet();
+            MenuLooper outer = new MenuLooper();
+            outer.addSubmenu("Inner", () -> {
+                builds.incrementAndGet();
+                MenuLooper inner = new MenuLooper();
+                inner.addOption("Visit", () -> visited.add("inner"));
+                return inner;
+            });
+            return outer;
+        });
+
+        assertEquals(0, builds.get());
+        menu.run();
+        assertEquals(2, builds.get());
+        assertEquals(1, visited.size());
+
+        String header = "Select an option from the list bellow" + NL;
+        String root = header + "[1] - Outer" + NL + "[2] - Exit" + NL;
+        String outer = header + "[1] - Inner" + NL + "[2] - Back" + NL + "[3] - Exit to root" + NL;
+        String inner = header + "[1] - Visit" + NL + "[2] - Back" + NL + "[3] - Exit to root" + NL;
+        assertEquals(root + outer + inner + inner + root + outer + inner + outer + root, bytes.toString());
+
+        // Only the outer submenu is built again, since the inner one is never entered
+        menu.evictSubmenus();
+        menu.run();
+        assertEquals(3, builds.get());
+    }
+
+    @Test
+    public void testAsyncOptions() throws InterruptedException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger completed = new AtomicInteger();
+        // Start three jobs with room for two, cancel the queued one, list them, then let the others finish
+        MenuLooper menu = new MenuLooper("1\n1\n1\n2\n4\n3\n3\n1\n4\n3\n5\n", new MenuLooper.Output(bytes));
+        menu.setMaxConcurrentJobs(2);
+        menu.addAsyncOption("Slow", job -> {
+            job.setProgress(0.5);
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                return;
+            }
+            completed.incrementAndGet();
+        });
+        menu.addOption("Await start", () -> {
+            try {
+                started.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        menu.addOption("Release", release::countDown);
+
+        menu.run();
+
+        List<Job> jobs = menu.getJobs();
+        assertEquals(3, jobs.size());
+        assertEquals(Job.State.CANCELLED, jobs.get(2).getState());
+        assertTrue(jobs.get(0).await(5, TimeUnit.SECONDS));
+        assertTrue(jobs.get(1).await(5, TimeUnit.SECONDS));
+        assertEquals(2, completed.get());
+        String output = bytes.toString();
+        assertTrue(output.contains("[4] - Background jobs" + NL + "[5] - Exit"), output);
+        assertTrue(output.contains("Started background job #3"), output);
+        assertTrue(output.contains("#1 Slow - running (50%)"), output);
+        assertTrue(output.contains("#3 Slow - cancelled"), output);
+    }
+
+    @Test
+    public void testRejectedJobs() throws InterruptedException {
+        AtomicInteger submitted = new AtomicInteger();
+        MenuLooper menu = new MenuLooper("1\n1\n2\n", new MenuLooper.Output(new ByteArrayOutputStream()));
+        menu.setMaxConcurrentJobs(1);
+        // The first job is rejected, as by a saturated executor, and the second still gets to run
+        menu.setJobExecutor(command -> {
+            if (submitted.incrementAndGet() == 1) {
+                throw new RejectedExecutionException("Saturated");
+            }
+            command.run();
+        });
+        menu.addAsyncOption("Work", () -> {});
+
+        menu.run();
+
+        List<Job> jobs = menu.getJobs();
+        assertEquals(Job.State.FAILED, jobs.get(0).getState());
+        assertTrue(jobs.get(0).getFailure() instanceof RejectedExecutionException);
+        assertTrue(jobs.get(1).await(5, TimeUnit.SECONDS));
+        assertEquals(Job.State.DONE, jobs.get(1).getState());
     }
 }
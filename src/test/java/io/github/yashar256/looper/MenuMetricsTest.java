@@ -0,0 +1,63 @@
+package io.github.yashar256.looper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+public class MenuMetricsTest {
+    @Test
+    public void testHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000);
+        }
+        assertEquals(1000, histogram.count());
+        assertEquals(1_000_000, histogram.max());
+        // Buckets are at most an eighth of their value wide
+        assertTrue(Math.abs(histogram.percentile(50) - 500_000) <= 500_000 / 8, String.valueOf(histogram.percentile(50)));
+        assertTrue(Math.abs(histogram.percentile(99) - 990_000) <= 990_000 / 8, String.valueOf(histogram.percentile(99)));
+        assertTrue(histogram.percentile(100) <= histogram.max());
+
+        for (long value = 0; value < 100_000; value += 7) {
+            assertTrue(LatencyHistogram.lowerBound(LatencyHistogram.bucketOf(value)) <= value);
+        }
+        assertEquals(0, new LatencyHistogram().percentile(50));
+    }
+
+    @Test
+    public void testMenuMetrics() throws JMException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        MenuLooper menu = new MenuLooper("1\nten\n10\n2\n1\n5\n3\n", new MenuLooper.Output(bytes));
+        menu.addOption("Square", s -> s.getOutput().println(String.valueOf(s.nextInt("Number") * 2)));
+        menu.addOption("Nothing", () -> {});
+        assertNull(menu.getMetrics());
+        menu.setPrintMetricsOnExit(true);
+
+        menu.run();
+
+        MenuMetrics metrics = menu.getMetrics();
+        assertEquals(2L, metrics.getOptionInvocations().get("Square"));
+        assertEquals(1L, metrics.getOptionInvocations().get("Nothing"));
+        assertEquals(1L, metrics.getRetries().get("integer"));
+        assertTrue(metrics.getPromptWaitMax().containsKey("Number"));
+        assertTrue(metrics.getPromptWaitMax().containsKey(MenuMetrics.MENU_PROMPT));
+        assertTrue(metrics.getOptionLatencyMax().get("Square") >= metrics.getOptionLatencyP50().get("Square"));
+        assertTrue(bytes.toString().endsWith(metrics.getSummary() + System.lineSeparator()), bytes.toString());
+
+        metrics.registerMBean("test");
+        ObjectName name = new ObjectName("io.github.yashar256.looper:type=MenuMetrics,name=\"test\"");
+        try {
+            Object retries = ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Retries");
+            assertTrue(retries instanceof javax.management.openmbean.TabularData);
+        } finally {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        }
+    }
+}
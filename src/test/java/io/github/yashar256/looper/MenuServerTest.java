@@ -0,0 +1,92 @@
+package io.github.yashar256.looper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class MenuServerTest {
+    private static MenuLooper echoMenu() {
+        MenuLooper menu = new MenuLooper();
+        menu.addOption("Echo", s -> s.getOutput().println("echo " + s.nextLine("Text")));
+        return menu;
+    }
+
+    private static String converse(InetSocketAddress address, String input) throws IOException {
+        try (Socket socket = new Socket(address.getAddress(), address.getPort())) {
+            OutputStream out = socket.getOutputStream();
+            out.write(input.getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            ByteArrayOutputStream received = new ByteArrayOutputStream();
+            InputStream in = socket.getInputStream();
+            byte[] buffer = new byte[4096];
+            for (int read; (read = in.read(buffer)) >= 0; ) {
+                received.write(buffer, 0, read);
+            }
+            return new String(received.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void testConcurrentSessionsAreIsolated() throws Exception {
+        try (MenuServer server = new MenuServer(echoMenu())) {
+            server.start(new InetSocketAddress("127.0.0.1", 0));
+            InetSocketAddress address = (InetSocketAddress) server.getLocalAddress();
+
+            ExecutorService clients = Executors.newFixedThreadPool(16);
+            List<Future<String>> conversations = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                String input = "1\nsession " + i + "\n2\n";
+                conversations.add(clients.submit(() -> converse(address, input)));
+            }
+            for (int i = 0; i < conversations.size(); i++) {
+                String output = conversations.get(i).get();
+                assertTrue(output.contains("echo session " + i + System.lineSeparator()), output);
+                assertEquals(1, output.split("echo ").length - 1);
+            }
+            clients.shutdown();
+        }
+    }
+
+    @Test
+    public void testSessionLimitAndIdleTimeout() throws Exception {
+        try (MenuServer server = new MenuServer(echoMenu())) {
+            server.setMaxSessions(1);
+            server.setIdleTimeout(Duration.ofMillis(200));
+            server.start(new InetSocketAddress("127.0.0.1", 0));
+            InetSocketAddress address = (InetSocketAddress) server.getLocalAddress();
+
+            try (Socket idle = new Socket(address.getAddress(), address.getPort())) {
+                long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+                while (server.getActiveSessions() == 0 && System.nanoTime() < deadline) {
+                    Thread.sleep(5);
+                }
+                assertTrue(converse(address, "").startsWith("The server is busy"));
+
+                // The idle session is closed by the server, which ends the stream
+                InputStream in = idle.getInputStream();
+                while (in.read() >= 0) {
+                    // Skip the menu
+                }
+            }
+            while (server.getActiveSessions() > 0) {
+                Thread.sleep(5);
+            }
+            assertTrue(converse(address, "1\nagain\n2\n").contains("echo again"));
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package io.github.yashar256.looper;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.LongStream;
+
+public class ParallelIngestTest {
+    @Test
+    public void testSmallFiles(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("numbers.txt");
+        Files.write(file, "1 -2\r\n\r\n  3\n+4".getBytes());
+        assertArrayEquals(new long[] {1, -2, 3, 4}, ParallelIngest.readLongs(file));
+        assertArrayEquals(new double[] {1, -2, 3, 4}, ParallelIngest.readDoubles(file));
+
+        Files.write(file, new byte[0]);
+        assertArrayEquals(new long[0], ParallelIngest.readLongs(file));
+
+        Files.write(file, "1.5\n2.5 x\n".getBytes());
+        ScriptInputException error = assertThrows(ScriptInputException.class, () -> ParallelIngest.readDoubles(file));
+        assertEquals(2, error.getLine());
+        assertEquals(5, error.getColumn());
+        assertThrows(ScriptInputException.class, () -> ParallelIngest.readLongs(file));
+    }
+
+    @Test
+    public void testManyChunks(@TempDir Path directory) throws IOException {
+        // Large enough to be split into several chunks, with lines of varying lengths and CRLF endings
+        int count = 2_000_000;
+        Path file = directory.resolve("numbers.txt");
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for (int i = 0; i < count; i++) {
+                writer.write(Long.toString(i * 1_000_003L));
+                writer.write(i % 7 == 6 ? "\r\n" : " ");
+            }
+        }
+        long[] expected = LongStream.range(0, count).map(i -> i * 1_000_003L).toArray();
+        assertArrayEquals(expected, ParallelIngest.readLongs(file));
+
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardOpenOption.APPEND)) {
+            writer.write("\r\n1 2 oops\n3\n");
+        }
+        ScriptInputException error = assertThrows(ScriptInputException.class, () -> ParallelIngest.readLongs(file));
+        assertEquals(count / 7 + 2, error.getLine());
+        assertEquals(5, error.getColumn());
+    }
+}
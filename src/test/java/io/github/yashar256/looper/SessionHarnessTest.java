@@ -0,0 +1,40 @@
+package io.github.yashar256.looper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class SessionHarnessTest {
+    @Test
+    public void testManySessions() {
+        MenuLooper menu = new MenuLooper();
+        menu.addOption("Double", scanner -> scanner.getOutput().println(Integer.toString(scanner.nextInt("Number") * 2)));
+        String menuText = "Select an option from the list bellow\n[1] - Double\n[2] - Exit\n";
+
+        SessionHarness harness = new SessionHarness();
+        for (int i = 0; i < 1000; i++) {
+            harness.addSession("Session " + i, menu, "1\n" + i + "\n2\n", menuText + "Number\n" + i * 2 + "\n" + menuText);
+        }
+        harness.addSession("Wrong output", menu, "1\n1\n2\n", menuText + "Number\n3\n" + menuText);
+        harness.addScannerCase("Int", "oops\n7", 7, scanner -> scanner.nextInt("Int"));
+        harness.addScannerCase("Ended", "", 7, scanner -> scanner.nextInt("Int"));
+
+        List<SessionHarness.Result> results = harness.run();
+
+        assertEquals(1003, results.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("Session " + i, results.get(i).getName());
+            assertTrue(results.get(i).passed(), results.get(i).toString());
+        }
+        assertFalse(results.get(1000).passed());
+        assertTrue(results.get(1000).toString().contains("expected <"));
+        assertTrue(results.get(1001).passed());
+        assertFalse(results.get(1002).passed());
+        assertNotNull(results.get(1002).getFailure());
+    }
+}
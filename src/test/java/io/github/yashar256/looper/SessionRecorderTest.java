@@ -0,0 +1,109 @@
+package io.github.yashar256.looper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class SessionRecorderTest {
+    private static MenuLooper newMenu(List<String> calls) {
+        MenuLooper menu = new MenuLooper();
+        menu.addOption("Add", scanner -> calls.add("add " + scanner.nextInt("Amount")));
+        menu.addOption("Rename", scanner -> calls.add("rename " + scanner.nextLine("Name")));
+        return menu;
+    }
+
+    @Test
+    public void testRecordAndReplay(@TempDir Path directory) throws IOException {
+        Path log = directory.resolve("sessions.log");
+        List<String> recorded = new ArrayList<>();
+        // A rejected number, a name with spaces and a selection by name
+        String input = "1\nten\n10\n2\nnew name\nadd\n5\n3\n";
+        try (SessionRecorder recorder = new SessionRecorder(log)) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            MenuLooper.Scanner scanner = new MenuLooper.Scanner(input, new MenuLooper.Output(bytes, StandardCharsets.UTF_8));
+            scanner.setRecorder(recorder);
+            newMenu(recorded).run(scanner);
+            scanner.getOutput().flush();
+
+            // A second session in the same log
+            MenuLooper.Scanner second = new MenuLooper.Scanner("2\nsecond\n", new MenuLooper.Output(new ByteArrayOutputStream(), StandardCharsets.UTF_8));
+            second.setRecorder(recorder);
+            newMenu(recorded).run(second);
+        }
+        assertEquals(Arrays.asList("add 10", "rename new name", "add 5", "rename second"), recorded);
+
+        SessionReplayer replayer = new SessionReplayer(log);
+        assertEquals(2, replayer.getSessionCount());
+        List<String> replayed = new ArrayList<>();
+        SessionReplayer.Replay replay = replayer.replay(0, newMenu(replayed), false);
+        assertEquals(Arrays.asList("add 10", "rename new name", "add 5"), replayed);
+        assertTrue(replay.outputMatches(), replay.getActualOutput());
+        assertTrue(replay.getExpectedOutput().contains("Please enter a valid integer and try again"));
+
+        // A menu which behaves differently is caught by the comparison
+        MenuLooper changed = newMenu(new ArrayList<>());
+        changed.addOption("Delete", () -> {});
+        assertFalse(replayer.replay(1, changed, false).outputMatches());
+
+        // A log cut short by a crash is read up to its last complete record
+        byte[] bytes = Files.readAllBytes(log);
+        SessionReplayer truncated = new SessionReplayer(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 2)));
+        assertEquals(2, truncated.getSessionCount());
+    }
+
+    @Test
+    public void testOriginalPace() throws IOException {
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        // The selection is typed 200ms after the menu is displayed
+        Reader slow = new Reader() {
+            private boolean typed;
+
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                if (typed) {
+                    return -1;
+                }
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                typed = true;
+                buffer[offset] = '3';
+                buffer[offset + 1] = '\n';
+                return 2;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        SessionRecorder recorder = new SessionRecorder(log);
+        MenuLooper.Scanner scanner = new MenuLooper.Scanner(slow, new MenuLooper.Output(new ByteArrayOutputStream(), StandardCharsets.UTF_8));
+        scanner.setRecorder(recorder);
+        newMenu(new ArrayList<>()).run(scanner);
+        recorder.close();
+
+        SessionReplayer replayer = new SessionReplayer(new ByteArrayInputStream(log.toByteArray()));
+        SessionReplayer.Replay paced = replayer.replay(0, newMenu(new ArrayList<>()), true);
+        assertTrue(paced.outputMatches());
+        assertTrue(paced.getElapsed().toMillis() >= 190, paced.getElapsed().toString());
+        SessionReplayer.Replay fast = replayer.replay(0, newMenu(new ArrayList<>()), false);
+        assertTrue(fast.outputMatches());
+        assertTrue(fast.getElapsed().toMillis() < 190, fast.getElapsed().toString());
+    }
+}
@@ -0,0 +1,158 @@
+package io.github.yashar256.looper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.CharBuffer;
+import java.util.Random;
+
+public class TokenizerTest {
+    private static Tokenizer tokenizer(String input) {
+        return new Tokenizer(CharBuffer.wrap(input), () -> {});
+    }
+
+    @Test
+    public void testIntegers() {
+        Tokenizer tokenizer = tokenizer("  -9223372036854775808 +12 9223372036854775808 1a ff 128");
+        assertEquals(Tokenizer.OK, tokenizer.scanLong(10, Long.MIN_VALUE, Long.MAX_VALUE));
+        assertEquals(Long.MIN_VALUE, tokenizer.longValue());
+        tokenizer.consumeToken();
+        assertEquals(Tokenizer.OK, tokenizer.scanLong(10, Long.MIN_VALUE, Long.MAX_VALUE));
+        assertEquals(12, tokenizer.longValue());
+        tokenizer.consumeToken();
+        assertEquals(Tokenizer.OVERFLOW, tokenizer.scanLong(10, Long.MIN_VALUE, Long.MAX_VALUE));
+        tokenizer.consumeToken();
+        assertEquals(Tokenizer.MISMATCH, tokenizer.scanLong(10, Long.MIN_VALUE, Long.MAX_VALUE));
+        tokenizer.consumeToken();
+        assertEquals(Tokenizer.OK, tokenizer.scanLong(16, Long.MIN_VALUE, Long.MAX_VALUE));
+        assertEquals(255, tokenizer.longValue());
+        tokenizer.consumeToken();
+        assertEquals(Tokenizer.OVERFLOW, tokenizer.scanLong(10, Byte.MIN_VALUE, Byte.MAX_VALUE));
+        tokenizer.consumeToken();
+        assertEquals(Tokenizer.END_OF_INPUT, tokenizer.scanLong(10, Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testDecimals() {
+        String[] tokens = {"0.5", "-3", ".25", "1e10", "2.5E-3", "0.1", "123456789.123456789012", "1e400", "-0", "4.9e-324", "NaN", "-Infinity"};
+        Tokenizer tokenizer = tokenizer(String.join("\n", tokens));
+        for (String token : tokens) {
+            assertEquals(Tokenizer.OK, tokenizer.scanDouble());
+            assertEquals(Double.parseDouble(token), tokenizer.doubleValue(), token);
+            assertEquals(Tokenizer.OK, tokenizer.scanFloat());
+            assertEquals(Float.parseFloat(token), tokenizer.floatValue(), token);
+            tokenizer.consumeToken();
+        }
+
+        for (String invalid : new String[] {"1.5f", "e5", "1e", "--1", ".", "0x10"}) {
+            assertEquals(Tokenizer.MISMATCH, tokenizer(invalid).scanDouble(), invalid);
+        }
+    }
+
+    @Test
+    public void testBigNumbers() {
+        Random random = new Random(42);
+        for (int radix : new int[] {2, 10, 16, 36}) {
+            // Lengths on both sides of the point where the digits start being split in half
+            for (int length : new int[] {1, 17, 18, 19, 576, 577, 2000, 20000}) {
+                StringBuilder digits = new StringBuilder(random.nextBoolean() ? "-" : "");
+                for (int i = 0; i < length; i++) {
+                    digits.append(Character.forDigit(random.nextInt(radix), radix));
+                }
+                Tokenizer tokenizer = tokenizer(digits.toString());
+                assertEquals(Tokenizer.OK, tokenizer.scanBigInteger(radix, Integer.MAX_VALUE));
+                assertEquals(new BigInteger(digits.toString(), radix), tokenizer.bigIntegerValue(), radix + ": " + length);
+            }
+        }
+
+        StringBuilder huge = new StringBuilder("123");
+        for (int i = 0; i < 5000; i++) {
+            huge.append((char) ('0' + random.nextInt(10)));
+        }
+        String[] decimals = {"0", "-0.50", "+.25", "5.", "1e10", "2.5E-3", "-1.5e+2", "00012.34000", huge + "." + huge, huge + "e-20000"};
+        Tokenizer tokenizer = tokenizer(String.join("\n", decimals));
+        for (String decimal : decimals) {
+            assertEquals(Tokenizer.OK, tokenizer.scanBigDecimal(Integer.MAX_VALUE));
+            assertEquals(new BigDecimal(decimal), tokenizer.bigDecimalValue(), decimal.length() > 20 ? decimal.substring(0, 20) : decimal);
+            tokenizer.consumeToken();
+        }
+
+        for (String invalid : new String[] {"-", "+", "12a", "1-2"}) {
+            assertEquals(Tokenizer.MISMATCH, tokenizer(invalid).scanBigInteger(10, Integer.MAX_VALUE), invalid);
+        }
+        for (String invalid : new String[] {".", "e5", "1e", "1.2.3", "1e99999999999", "NaN"}) {
+            assertEquals(Tokenizer.MISMATCH, tokenizer(invalid).scanBigDecimal(Integer.MAX_VALUE), invalid);
+        }
+
+        // Tokens longer than the limit are not read in full, and the rest of their line can be skipped
+        tokenizer = tokenizer("123456 78\n9");
+        assertEquals(Tokenizer.OVERFLOW, tokenizer.scanBigInteger(10, 5));
+        tokenizer.skipLine();
+        assertEquals(Tokenizer.OK, tokenizer.scanBigInteger(10, 5));
+        assertEquals(BigInteger.valueOf(9), tokenizer.bigIntegerValue());
+    }
+
+    @Test
+    public void testBlankLines() {
+        String input = "1 2\r\n3\r\n \t\r\n\r\n4\n";
+        // Reading one character at a time splits every \r\n across reads
+        Reader trickle = new StringReader(input) {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                return super.read(buffer, offset, Math.min(length, 1));
+            }
+        };
+        for (Tokenizer tokenizer : new Tokenizer[] {tokenizer(input), new Tokenizer(trickle, () -> {})}) {
+            for (int expected = 1; expected <= 3; expected++) {
+                assertTrue(tokenizer.hasTokenBeforeBlankLine());
+                assertEquals(String.valueOf(expected), tokenizer.token());
+                tokenizer.consumeToken();
+            }
+            assertFalse(tokenizer.hasTokenBeforeBlankLine());
+            assertFalse(tokenizer.hasTokenBeforeBlankLine());
+            assertTrue(tokenizer.hasTokenBeforeBlankLine());
+            assertEquals("4", tokenizer.token());
+            tokenizer.consumeToken();
+            assertFalse(tokenizer.hasTokenBeforeBlankLine());
+            assertFalse(tokenizer.hasToken());
+        }
+    }
+
+    @Test
+    public void testLines() {
+        Tokenizer tokenizer = tokenizer("12 rest\r\nsecond\rthird\n\nlast");
+        assertEquals(Tokenizer.OK, tokenizer.scanLong(10, Long.MIN_VALUE, Long.MAX_VALUE));
+        tokenizer.consumeToken();
+        assertEquals(" rest", tokenizer.readLine());
+        assertEquals("second", tokenizer.readLine());
+        assertEquals("third", tokenizer.readLine());
+        assertEquals("", tokenizer.readLine());
+        assertEquals("last", tokenizer.readLine());
+        assertNull(tokenizer.readLine());
+        assertFalse(tokenizer.hasToken());
+    }
+
+    @Test
+    public void testTokensLongerThanTheBuffer() {
+        StringBuilder digits = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            digits.append('7');
+        }
+        Tokenizer tokenizer = tokenizer("x " + digits + " 5");
+        assertEquals("x", tokenizer.token());
+        tokenizer.consumeToken();
+        assertTrue(digits.toString().equals(tokenizer.token()));
+        tokenizer.consumeToken();
+        assertEquals(Tokenizer.OK, tokenizer.scanLong(10, Long.MIN_VALUE, Long.MAX_VALUE));
+        assertEquals(5, tokenizer.longValue());
+    }
+}